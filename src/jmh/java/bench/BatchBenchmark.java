@@ -0,0 +1,59 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import sql.query.Batch;
+import sql.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk inserts through {@link Query#batch(String, List)} against the same rows inserted one statement at a time
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    private static final String INSERT = "insert into batch_bench values (?, ?, ?)";
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private List<Object[]> values;
+
+    @Setup(Level.Trial)
+    public void setUp () {
+        BenchmarkDatabase.open();
+        Query.fromString("create table if not exists batch_bench (id integer, title text, score real)");
+
+        values = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            values.add(new Object[]{i, "title " + i, i * 0.25});
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clear () {
+        Query.fromString("delete from batch_bench");
+    }
+
+    @Benchmark
+    public List<Batch.Report> batched () {
+        return Query.batch(INSERT, values);
+    }
+
+    @Benchmark
+    public int oneByOne () {
+        int count = 0;
+        for (Object[] row : values) {
+            Query.fromPreparedStatement(INSERT, row);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import common.Settings;
+import log.Log;
+import sql.SqlConnection;
+import sql.query.Query;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Points the library at a SQLite file inside the benchmark working directory ({@code target/jmh}) and keeps the
+ * console quiet, so benchmarks measure the library and not the terminal. Must be called before the first query.
+ * **/
+public class BenchmarkDatabase {
+
+    private static boolean opened;
+
+    private BenchmarkDatabase () {
+    }
+
+    public static synchronized void open () {
+        if (opened) return;
+
+        Path database = Path.of("bench.db").toAbsolutePath();
+
+        try {
+            Files.deleteIfExists(database);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        SqlConnection.configure().url("jdbc:sqlite:" + database).apply();
+
+        silence();
+        opened = true;
+    }
+
+    /**
+     * Turns off query and result printing and sends the console to nowhere. Log lines are still formatted and written.
+     * **/
+    public static void silence () {
+        Settings.logQueries = false;
+        Settings.logResults = false;
+        Log.LOG_DIR = Path.of("logs").toAbsolutePath().toString();
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+    }
+
+    /**
+     * Creates {@code table} with an integer key and {@code columns - 1} alternating text and real columns and fills it
+     * with {@code rows} rows
+     * **/
+    public static void createTable (String table, int rows, int columns) {
+        Query.fromString("drop table if exists " + table);
+
+        StringJoiner definition = new StringJoiner(", ", "create table " + table + " (", ")");
+        StringJoiner placeholders = new StringJoiner(", ", "insert into " + table + " values (", ")");
+        for (int c = 0; c < columns; c++) {
+            definition.add("c" + c + (c == 0 ? " integer primary key" : c % 2 == 1 ? " text" : " real"));
+            placeholders.add("?");
+        }
+        Query.fromString(definition.toString());
+
+        List<Object[]> values = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            Object[] row = new Object[columns];
+            row[0] = r;
+            for (int c = 1; c < columns; c++) {
+                row[c] = c % 2 == 1 ? "value " + r + "/" + c : r * 0.5 + c;
+            }
+            values.add(row);
+        }
+        Query.batch(placeholders.toString(), values);
+    }
+}
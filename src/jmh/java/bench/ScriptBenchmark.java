@@ -0,0 +1,55 @@
+package bench;
+
+import common.Settings;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sql.query.Query;
+import sql.query.ScriptLexer;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting a script into statements, and running it one statement at a time or batched
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptBenchmark {
+
+    @Param({"1000", "10000"})
+    public int statements;
+
+    @Param({"false", "true"})
+    public boolean batchScripts;
+
+    private String script;
+
+    @Setup(Level.Trial)
+    public void setUp () {
+        BenchmarkDatabase.open();
+        Settings.batchScripts = batchScripts;
+        Query.fromString("create table if not exists script_bench (id integer, title text, note text)");
+
+        StringBuilder builder = new StringBuilder("delete from script_bench;\n");
+        for (int i = 0; i < statements; i++) {
+            builder.append("-- row ").append(i).append('\n')
+                    .append("insert into script_bench values (").append(i)
+                    .append(", 'title; ").append(i).append("', 'it''s /* not */ a comment');\n");
+        }
+        script = builder.toString();
+    }
+
+    @Benchmark
+    public void split (Blackhole blackhole) {
+        new ScriptLexer(new StringReader(script)).forEachRemaining(blackhole::consume);
+    }
+
+    @Benchmark
+    public Object execute () {
+        return Query.fromString(script);
+    }
+}
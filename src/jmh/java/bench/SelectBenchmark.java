@@ -0,0 +1,50 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sql.query.ColumnarResult;
+import sql.query.Query;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading a whole {@code SELECT} as {@code String} rows, as typed columns and through a cursor
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectBenchmark {
+
+    private static final String SELECT = "select * from select_bench";
+
+    @Param({"100", "10000", "100000"})
+    public int rows;
+
+    @Param({"4", "16"})
+    public int columns;
+
+    @Setup(Level.Trial)
+    public void setUp () {
+        BenchmarkDatabase.open();
+        BenchmarkDatabase.createTable("select_bench", rows, columns);
+    }
+
+    @Benchmark
+    public ArrayList<String[]> materialize () {
+        return Query.fromPreparedStatement(SELECT);
+    }
+
+    @Benchmark
+    public ColumnarResult columnar () {
+        return Query.selectColumnar(SELECT);
+    }
+
+    @Benchmark
+    public void cursor (Blackhole blackhole) {
+        Query.forEachRow(SELECT, blackhole::consume);
+    }
+}
@@ -0,0 +1,82 @@
+package log;
+
+import bench.BenchmarkDatabase;
+import common.Settings;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging throughput from several threads, the cost of formatting one line against the old {@code String} based
+ * formatting, and printing a large {@code SELECT} result. Lives in the {@code log} package to reach
+ * {@link LogFormatter}.
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogBenchmark {
+
+    @Param({"false", "true"})
+    public boolean asyncLogging;
+
+    private final LogRecord record = new LogRecord(Level.INFO, System.currentTimeMillis(), "select title from songs where id = 7");
+    private List<String[]> rows;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUp () {
+        BenchmarkDatabase.silence();
+        Settings.asyncLogging = asyncLogging;
+        Settings.streamLogs = true;
+
+        rows = new ArrayList<>();
+        rows.add(new String[]{"id", "title", "artist"});
+        rows.add(new String[]{"", "", ""});
+        for (int i = 0; i < 10_000; i++) {
+            rows.add(new String[]{String.valueOf(i), "title " + i, i % 3 == 0 ? null : "artist " + i});
+        }
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void flush () {
+        Log.flush();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void info () {
+        Log.info("select title from songs where id = 7");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int formatLine () {
+        return LogFormatter.get().file(record).length();
+    }
+
+    /**
+     * What a line cost before {@link LogFormatter}: the timestamp formatted for every line, the colored line
+     * concatenated and the colors replaced again for the file
+     * **/
+    @Benchmark
+    @Threads(1)
+    public String formatLineLegacy () {
+        String time = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.time()), ZoneId.systemDefault()).format(Settings.TIME);
+        String line = Settings.GREEN + "[" + time + "] " + Settings.RESET + record.message();
+        return Log.stripAnsi(line);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    public void logSelect () {
+        Log.logSelect.accept(rows);
+    }
+}
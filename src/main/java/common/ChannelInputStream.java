@@ -0,0 +1,76 @@
+package common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a {@link FileChannel} in large chunks through one reused direct buffer and counts how many bytes were read,
+ * so huge files can be streamed with a fixed amount of memory and their progress reported.
+ * @see FileUtil#decompress(InputStream)
+ * @see sql.query.Query#fromDump(String)
+ * */
+public class ChannelInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position;
+
+    /**
+     * @param chunkSize size of the direct buffer, every read from the channel reads this many bytes at most
+     * **/
+    public ChannelInputStream (FileChannel channel, int chunkSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(chunkSize);
+        buffer.flip();
+    }
+
+    @Override
+    public int read () throws IOException {
+        if (!fill()) return -1;
+        position++;
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read (byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!fill()) return -1;
+
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available () {
+        return buffer.remaining();
+    }
+
+    /**
+     * Amount of bytes handed out so far
+     * **/
+    public long getPosition () {
+        return position;
+    }
+
+    @Override
+    public void close () throws IOException {
+        channel.close();
+    }
+
+    private boolean fill () throws IOException {
+        if (buffer.hasRemaining()) return true;
+
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+
+        return read > 0;
+    }
+}
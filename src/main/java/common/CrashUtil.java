@@ -16,7 +16,8 @@ public class CrashUtil {
     private CrashUtil(){}
 
     /**
-     * Logging errors with this method will end the program, due to it saving and throwing the error. Will also close the connection safely
+     * Logs the error and throws it. The pools, caches and other threads' queries are left alone, other threads keep
+     * working, call {@link Quit#end(long, long)} to shut the library down.
      * @see log.Log#error(String)
      * @see #catchError(Exception)
      * **/
@@ -24,7 +25,7 @@ public class CrashUtil {
         crashed = true;
         log.Log.error(e.getMessage());
         log.Log.error("LIBRARY CRASHED");
-        Quit.end(SqlConnection.LIBRARY_START, System.nanoTime());
+        Log.flush();
         throw new RuntimeException(e);
     }
     /**
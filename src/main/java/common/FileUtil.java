@@ -1,9 +1,16 @@
 package common;
 
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.stream.Collectors;
 
 /**
@@ -40,4 +47,40 @@ public class FileUtil {
         }
     }
 
+    /**
+     * Detects gzip, bzip2, xz and the other formats supported by commons-compress from the first bytes of the stream and
+     * returns a stream that decompresses on the fly. Streams without a known signature are returned as they are, buffered.
+     * @see ChannelInputStream
+     * **/
+    public static InputStream decompress (InputStream in) throws IOException {
+        InputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        String format;
+
+        try {
+            format = CompressorStreamFactory.detect(buffered);
+        } catch (CompressorException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            return buffered;
+        }
+
+        try {
+            return new CompressorStreamFactory(true).createCompressorInputStream(format, buffered);
+        } catch (CompressorException e) {
+            throw new IOException("Cannot decompress %s stream".formatted(format), e);
+        }
+    }
+
+    /**
+     * Whether the file starts with the signature of a format {@link #decompress(InputStream)} would decompress
+     * **/
+    public static boolean isCompressed (Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64)) {
+            CompressorStreamFactory.detect(in);
+            return true;
+        } catch (CompressorException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            return false;
+        }
+    }
+
 }
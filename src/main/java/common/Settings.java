@@ -1,6 +1,8 @@
 package common;
 
+import log.Level;
 import log.Log;
+import log.OverflowPolicy;
 import sql.query.Query;
 
 import java.sql.PreparedStatement;
@@ -15,7 +17,7 @@ public class Settings {
 
     /**
      * Used to stop coloring everything past the timestamp
-     * @see log.Log#log(String message, String color)
+     * @see log.Level#color()
      * **/
     public static String RESET = "\u001B[0m";
     /**
@@ -45,7 +47,7 @@ public class Settings {
 
     /**
      * Used to control the printing of queries
-     * @see Query#executeExpression(String SQL)
+     * @see Query#executeExpression(String SQL, Object... parameters)
      * @see log.Log#logSQL
      * **/
     public static boolean logQueries = true;
@@ -56,6 +58,256 @@ public class Settings {
      * @see Log#logSelect
      * **/
     public static boolean logResults = true;
+    /**
+     * Amount of rows used to measure the column widths of a printed result, later rows keep those widths
+     * @see log.TableRenderer
+     * **/
+    public static int SELECT_SAMPLE_ROWS = 1_000;
+    /**
+     * Amount of rows printed for one result, the rest is summarized in one line. {@code 0} prints every row.
+     * @see log.TableRenderer
+     * **/
+    public static int SELECT_MAX_ROWS = 200;
+    /**
+     * Printed cells longer than this are cut. {@code 0} never cuts.
+     * @see log.TableRenderer
+     * **/
+    public static int SELECT_MAX_CELL_WIDTH = 64;
+    /**
+     * Used to send the non-{@code SELECT} statements of scripts to the server in batches instead of one by one.
+     * Batched statements are not logged one by one, each batch is logged with its update counts instead.
+     * @see sql.query.Batch
+     * @see Query#fromString(String)
+     * **/
+    public static boolean batchScripts = false;
+    /**
+     * Amount of statements sent to the server in one {@code executeBatch} call
+     * @see sql.query.Batch
+     * **/
+    public static int BATCH_SIZE = 500;
+    /**
+     * Used to run scripts in one transaction instead of committing every statement on its own.
+     * {@code SCRIPT} wraps every script, {@code SEQUENCE} wraps a whole {@code fromSequence} call.
+     * @see sql.Transaction
+     * @see Query#fromString(String)
+     * **/
+    public static sql.Transaction.Scope scriptTransaction = sql.Transaction.Scope.NONE;
+    /**
+     * When scripts run in a transaction, commit every this many statements, 0 commits only at the end of the script
+     * @see #scriptTransaction
+     * @see sql.Transaction#checkpoint()
+     * **/
+    public static int SCRIPT_COMMIT_INTERVAL = 0;
+    /**
+     * Size in bytes of the chunks a dump file is read in
+     * @see Query#fromDump(String)
+     * **/
+    public static int DUMP_CHUNK_SIZE = 1 << 20;
+    /**
+     * Time in ms between two progress lines while a dump file is executed
+     * @see sql.query.DumpProgress
+     * **/
+    public static long DUMP_PROGRESS_INTERVAL = 5_000;
+    /**
+     * Used to read the first line of a bulk loaded file as column names, without it the columns are in table order
+     * @see Query#bulkLoad(String, String)
+     * **/
+    public static boolean bulkHeader = true;
+    /**
+     * Rows per multi-row {@code INSERT} of a bulk load, lowered when the statement would pass the server's parameter limit
+     * @see sql.Dialect#getMaxParameters()
+     * **/
+    public static int BULK_ROWS_PER_STATEMENT = 256;
+    /**
+     * Rows after which a bulk load commits, {@code 0} loads the whole file in one transaction
+     * @see Query#bulkLoad(String, String)
+     * **/
+    public static int BULK_COMMIT_ROWS = 100_000;
+    /**
+     * Used to bulk load into MySQL with {@code LOAD DATA LOCAL INFILE}. Only used when the url has
+     * {@code allowLoadLocalInfile=true}, otherwise the rows are sent as multi-row {@code INSERT}s.
+     * @see Query#bulkLoad(String, String)
+     * **/
+    public static boolean bulkLocalInfile = true;
+
+    /**
+     * Used to write log lines on a background thread, logging then only costs putting the line into a queue
+     * @see log.Log#flush()
+     * **/
+    public static boolean asyncLogging = true;
+    /**
+     * Amount of log lines that can wait for the background thread, rounded up to a power of two. Read once on the first
+     * asynchronous log call.
+     * @see #asyncLogging
+     * **/
+    public static int LOG_QUEUE_SIZE = 8192;
+    /**
+     * What happens to a log line when {@link #LOG_QUEUE_SIZE} lines are already waiting
+     * @see log.OverflowPolicy
+     * **/
+    public static OverflowPolicy logOverflow = OverflowPolicy.BLOCK;
+    /**
+     * Lowest level that is never dropped with {@link OverflowPolicy#DROP_BELOW_LEVEL}
+     * @see #logOverflow
+     * **/
+    public static Level logDropLevel = Level.WARN;
+    /**
+     * Used to append log lines to {@code LOG_DIR/current.log} as they are logged instead of keeping them all in memory
+     * until the end of the program
+     * @see log.LogFileHandler#saveLogFiles()
+     * **/
+    public static boolean streamLogs = true;
+    /**
+     * Amount of latest lines {@link Log#getBuffer()} keeps while {@link #streamLogs} is on
+     * **/
+    public static int LOG_BUFFER_LINES = 1_000;
+    /**
+     * Time in ms between two flushes of the log file
+     * @see #streamLogs
+     * **/
+    public static long LOG_FLUSH_INTERVAL = 1_000;
+    /**
+     * Size in bytes after which the log file is rolled over
+     * @see #streamLogs
+     * **/
+    public static long LOG_ROLL_SIZE = 16L << 20;
+    /**
+     * Time in ms after which the log file is rolled over
+     * @see #streamLogs
+     * **/
+    public static long LOG_ROLL_INTERVAL = 24L * 60 * 60 * 1000;
+    /**
+     * Used to gzip rolled over log files
+     * @see #streamLogs
+     * **/
+    public static boolean compressLogs = true;
+
+    /**
+     * Amount of connections the pool keeps open even when they are idle
+     * @see sql.ConnectionPool
+     * **/
+    public static int POOL_MIN_SIZE = 1;
+    /**
+     * Max amount of connections the pool opens, borrowing past this blocks until one is returned
+     * @see sql.ConnectionPool#borrow()
+     * **/
+    public static int POOL_MAX_SIZE = 8;
+    /**
+     * Time in ms a query waits for a free connection before failing
+     * @see sql.ConnectionPool#borrow()
+     * **/
+    public static long POOL_ACQUIRE_TIMEOUT = 30_000;
+    /**
+     * Time in ms after which idle connections above {@link #POOL_MIN_SIZE} are closed
+     * @see sql.ConnectionPool
+     * **/
+    public static long POOL_IDLE_TIMEOUT = 600_000;
+    /**
+     * Timeout in seconds for the {@code isValid} check done on every borrow
+     * @see sql.ConnectionPool#borrow()
+     * **/
+    public static int POOL_VALIDATION_TIMEOUT = 5;
+    /**
+     * Amount of {@link sql.query.Query#async(String, Object...)} statements running at once per connection pool, the
+     * rest wait in a queue. {@code 0} uses {@link #POOL_MAX_SIZE}.
+     * @see sql.query.QueryFuture
+     * **/
+    public static int ASYNC_MAX_CONCURRENCY = 0;
+    /**
+     * Amount of prepared statements cached per connection, set to 0 to disable the cache
+     * @see sql.StatementCache
+     * **/
+    public static int STATEMENT_CACHE_SIZE = 256;
+    /**
+     * Used to record prepare, execute and fetch times, rows and bytes of every statement, grouped by normalized SQL.
+     * The most expensive statements are logged at the end of the program.
+     * @see sql.query.QueryMetrics
+     * **/
+    public static boolean queryMetrics = true;
+    /**
+     * Amount of different statements {@link sql.query.QueryMetrics} tracks, later ones are counted together
+     * **/
+    public static int METRICS_MAX_STATEMENTS = 512;
+    /**
+     * Amount of statements logged by {@link sql.query.QueryMetrics#report()}
+     * **/
+    public static int METRICS_REPORT_SIZE = 20;
+    /**
+     * Used to log only slow statements. Statements over {@link #SLOW_QUERY_THRESHOLD} ms are written to
+     * {@code LOG_DIR/slow.log} with their plan, every other statement is not logged at all, even with {@link #logQueries}.
+     * @see sql.query.QueryMetrics
+     * **/
+    public static boolean slowQueryLog = false;
+    /**
+     * Time in ms from which a statement counts as slow
+     * @see #slowQueryLog
+     * **/
+    public static long SLOW_QUERY_THRESHOLD = 500;
+    /**
+     * Used to add the {@code EXPLAIN} output to slow statements. Runs one more query for every slow statement.
+     * @see #slowQueryLog
+     * **/
+    public static boolean explainSlowQueries = true;
+    /**
+     * Used to keep {@code SELECT} results in memory and answer identical statements with the same parameters from there.
+     * Entries are dropped when the library writes to a table they read, writes from other programs are only bounded by
+     * {@link #RESULT_CACHE_TTL}.
+     * @see sql.query.ResultCache
+     * **/
+    public static boolean resultCache = false;
+    /**
+     * Estimated size in bytes of every cached result together
+     * @see #resultCache
+     * **/
+    public static long RESULT_CACHE_SIZE = 64L << 20;
+    /**
+     * Time in ms after which a cached result is read again, {@code 0} keeps results until they are invalidated or evicted
+     * @see #resultCache
+     * **/
+    public static long RESULT_CACHE_TTL = 10_000;
+    /**
+     * Used to keep {@code SELECT} results in files under {@link #DISK_CACHE_DIR}, so they survive a restart. Looked up
+     * after the memory cache and before the database, the same statements as with {@link #resultCache} are cached.
+     * @see sql.query.DiskCache
+     * **/
+    public static boolean diskCache = false;
+    /**
+     * Folder holding the segment files and the index of the disk cache
+     * @see #diskCache
+     * **/
+    public static String DISK_CACHE_DIR = "cache";
+    /**
+     * Size in bytes the disk cache may take, least recently used results are evicted past it
+     * @see #diskCache
+     * **/
+    public static long DISK_CACHE_SIZE = 1L << 30;
+    /**
+     * Time in ms after which a result on disk is read again, also across restarts. {@code 0} keeps results until they
+     * are invalidated or evicted.
+     * @see #diskCache
+     * **/
+    public static long DISK_CACHE_TTL = 60L * 60 * 1000;
+    /**
+     * Size in bytes after which the disk cache starts a new segment file
+     * @see #diskCache
+     * **/
+    public static int DISK_CACHE_SEGMENT_SIZE = 64 << 20;
+    /**
+     * Amount of rows a {@link sql.query.Cursor} asks the driver for at once, this is the max amount of rows held in memory.
+     * MySQL only uses it with {@code useCursorFetch=true} in the url, otherwise the cursor streams one row at a time
+     * @see sql.query.Query#cursor(String, Object...)
+     * **/
+    public static int FETCH_SIZE = 1_000;
+    /**
+     * Size in bytes of the buffer an export is written through
+     * @see sql.export.Export
+     * **/
+    public static int EXPORT_BUFFER_SIZE = 1 << 20;
+    /**
+     * Rows the columnar export keeps in memory and writes as one group, the heap it needs grows with this
+     * @see sql.export.Export.Format#COLUMNAR
+     * **/
+    public static int EXPORT_ROW_GROUP_SIZE = 65_536;
 
 
 }
@@ -0,0 +1,88 @@
+package common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes text as UTF-8 straight into a {@link ByteBuffer}, without the {@code byte[]} {@link String#getBytes} makes.
+ * Unpaired surrogates become {@code ?}, like {@link StandardCharsets#UTF_8} does.
+ * @see Varint
+ * **/
+public final class Utf8 {
+
+    private Utf8 () {
+    }
+
+    /**
+     * Amount of bytes {@link #encode(CharSequence, ByteBuffer)} writes
+     * **/
+    public static int length (CharSequence text) {
+        int length = text.length();
+        int bytes = length;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) continue;
+
+            if (c < 0x800) {
+                bytes++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes the whole text, the buffer must have {@link #length(CharSequence)} bytes left
+     * **/
+    public static void encode (CharSequence text, ByteBuffer out) {
+        for (int i = 0; i < text.length(); i++) i = encode(text, i, out);
+    }
+
+    /**
+     * Encodes the character at {@code index}, a surrogate pair takes both chars. The buffer must have 4 bytes left.
+     * @return index of the last char used
+     * **/
+    public static int encode (CharSequence text, int index, ByteBuffer out) {
+        char c = text.charAt(index);
+
+        if (c < 0x80) {
+            out.put((byte) c);
+        } else if (c < 0x800) {
+            out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1))) {
+            int code = Character.toCodePoint(c, text.charAt(++index));
+            out.put((byte) (0xF0 | code >> 18)).put((byte) (0x80 | code >> 12 & 0x3F))
+                    .put((byte) (0x80 | code >> 6 & 0x3F)).put((byte) (0x80 | code & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            out.put((byte) '?');
+        } else {
+            out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        }
+        return index;
+    }
+
+    /**
+     * Decodes {@code length} bytes at the buffer's position and moves past them
+     * **/
+    public static String decode (ByteBuffer in, int length) {
+        String text = decode(in, in.position(), length);
+        in.position(in.position() + length);
+        return text;
+    }
+
+    /**
+     * Decodes {@code length} bytes at {@code index} without moving the buffer's position
+     * **/
+    public static String decode (ByteBuffer in, int index, int length) {
+        if (in.hasArray()) return new String(in.array(), in.arrayOffset() + index, length, StandardCharsets.UTF_8);
+
+        byte[] bytes = new byte[length];
+        in.get(index, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length integers in the LEB128 layout used by Protocol Buffers: 7 bits per byte, lowest bits first, the high
+ * bit set on every byte but the last. Small values take one byte, a {@code long} at most ten. Signed values are
+ * zigzag encoded first, so small negative numbers stay small.
+ * @see sql.query.BinaryResult
+ * **/
+public final class Varint {
+
+    /**
+     * Most bytes one value can take
+     * **/
+    public static final int MAX_SIZE = 10;
+
+    private Varint () {
+    }
+
+    /**
+     * Writes {@code value} as unsigned, negative values take ten bytes
+     * **/
+    public static void write (ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static void writeSigned (ByteBuffer buffer, long value) {
+        write(buffer, zigZag(value));
+    }
+
+    /**
+     * Reads a value at the buffer's position and moves past it
+     * @throws IllegalArgumentException when the value is longer than {@link #MAX_SIZE} bytes
+     * **/
+    public static long read (ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads a value at {@code index} without moving the buffer's position, it takes {@link #size(long)} bytes
+     * **/
+    public static long read (ByteBuffer buffer, int index) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get(index++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static long readSigned (ByteBuffer buffer) {
+        return unZigZag(read(buffer));
+    }
+
+    /**
+     * Reads a value from a stream
+     * @throws EOFException when the stream ends before the value
+     * **/
+    public static long read (InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("Stream ended inside a varint");
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Amount of bytes {@link #write(ByteBuffer, long)} takes for {@code value}
+     * **/
+    public static int size (long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    public static long zigZag (long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag (long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,111 @@
+package log;
+
+import common.Settings;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves the formatting and writing of log lines off the calling thread. Callers only put the line into a lock-free
+ * {@link RingBuffer}, a background thread formats it and writes it to the console and the log buffer, so logging a
+ * query never waits for the terminal.
+ *
+ * @see Settings#asyncLogging
+ * @see Settings#logOverflow
+ * @see #flush()
+ *
+ */
+class AsyncAppender {
+
+    private static final RingBuffer<LogRecord> queue = new RingBuffer<>(Settings.LOG_QUEUE_SIZE);
+
+    private static final AtomicLong published = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile long written;
+    private static volatile boolean sleeping;
+
+    private static final Thread writer = Thread.ofPlatform()
+            .name("log-writer")
+            .daemon()
+            .unstarted(AsyncAppender::run);
+
+    static {
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flush();
+            RollingFileSink.flush();
+        }, "log-flush"));
+    }
+
+    private AsyncAppender () {
+    }
+
+    /**
+     * Queues a record for the writer thread, applying {@link Settings#logOverflow} when the buffer is full
+     *
+     */
+    static void append (LogRecord record) {
+        while (!queue.offer(record)) {
+            OverflowPolicy overflow = Settings.logOverflow;
+
+            if (overflow == OverflowPolicy.DROP
+                    || (overflow == OverflowPolicy.DROP_BELOW_LEVEL && record.level().compareTo(Settings.logDropLevel) < 0)) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            wakeWriter();
+            LockSupport.parkNanos(50_000);
+        }
+
+        published.incrementAndGet();
+        if (sleeping) wakeWriter();
+    }
+
+    /**
+     * Blocks until every line queued before this call was written. Called before the log is saved and on shutdown.
+     *
+     * @see LogFileHandler#saveLogFiles()
+     *
+     */
+    static void flush () {
+        long target = published.get();
+
+        while (written < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(100_000);
+        }
+
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) Log.write(new LogRecord(Level.WARN, System.currentTimeMillis(),
+                "Dropped %d log lines, the log buffer was full".formatted(lost)));
+    }
+
+    private static void wakeWriter () {
+        LockSupport.unpark(writer);
+    }
+
+    private static void run () {
+        while (true) {
+            LogRecord record = queue.poll();
+
+            if (record == null) {
+                sleeping = true;
+                record = queue.poll();
+                if (record == null) {
+                    LockSupport.parkNanos(10_000_000);
+                    sleeping = false;
+                    continue;
+                }
+                sleeping = false;
+            }
+
+            try {
+                Log.write(record);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            written++;
+        }
+    }
+}
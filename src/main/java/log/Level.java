@@ -0,0 +1,44 @@
+package log;
+
+import common.Settings;
+
+/**
+ * Level of a log line. Decides the console color of the timestamp and the tag written to the log file.
+ *
+ * @see LogRecord
+ * @see Log#info(String)
+ *
+ */
+public enum Level {
+    INFO("[INFO] "),
+    EXEC("[EXEC] "),
+    WARN("[WARN] "),
+    ERROR("[ERROR] ");
+
+    private final String tag;
+
+    Level (String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Tag written in front of the line in log files, replaces the console color
+     *
+     */
+    public String tag () {
+        return tag;
+    }
+
+    /**
+     * ANSI color of the level, read from {@link Settings} every time so it can still be changed at runtime
+     *
+     */
+    public String color () {
+        return switch (this) {
+            case INFO -> Settings.GREEN;
+            case EXEC -> Settings.BLUE;
+            case WARN -> Settings.YELLOW;
+            case ERROR -> Settings.RED;
+        };
+    }
+}
@@ -3,13 +3,10 @@ package log;
 import sql.query.Query;
 import common.Settings;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 
 import static common.Settings.*;
 
@@ -18,7 +15,7 @@ import static common.Settings.*;
  * clears old logs
  *
  * @see #buffer
- * @see #log(String, String)
+ * @see #log(String, Level)
  * @see #logSelect
  * @see LogFileHandler#saveLogFiles()
  * @see LogFileHandler#cleanUp()
@@ -38,16 +35,32 @@ public class Log {
     }
 
     /**
-     * Holds all logged information for {@code saveLogFiles} to write to a log and the latest log
+     * Holds all logged information for {@code saveLogFiles} to write to a log and the latest log.
+     * With {@link Settings#streamLogs} lines are written to disk right away and this only holds the latest
+     * {@link Settings#LOG_BUFFER_LINES} to {@code 2 * LOG_BUFFER_LINES} lines.
      *
-     * @see #log(String, String)
+     * @see #log(String, Level)
      * @see LogFileHandler#saveLogFiles()
      *
      */
-    private static final List<String> buffer = Collections.synchronizedList(new ArrayList<>());
+    private static final List<LogRecord> buffer = Collections.synchronizedList(new ArrayList<>());
 
+    /**
+     * Returns a copy of the buffered lines as they are written to log files, with a level tag instead of ANSI colors
+     *
+     * @see LogFormatter
+     *
+     */
     public static List<String> getBuffer () {
-        return buffer;
+        LogFormatter formatter = LogFormatter.get();
+
+        synchronized (buffer) {
+            List<String> lines = new ArrayList<>(buffer.size());
+            for (LogRecord record : buffer) {
+                lines.add(formatter.file(record).asString());
+            }
+            return lines;
+        }
     }
 
 
@@ -56,11 +69,11 @@ public class Log {
      * Logs info action with {@code GREEN} color, check the constants .kt file for the value
      *
      * @see Settings#GREEN
-     * @see #log(String message, String color)
+     * @see #log(String message, Level level)
      *
      */
     public static void info (String message) {
-        log(message, GREEN);
+        log(message, Level.INFO);
         infoCount++;
     }
 
@@ -68,11 +81,11 @@ public class Log {
      * Logs execution action with {@code BLUE} color, check the constants .kt file for the value
      *
      * @see Settings#BLUE
-     * @see #log(String message, String color)
+     * @see #log(String message, Level level)
      *
      */
     public static void exec (String message) {
-        log(message, BLUE);
+        log(message, Level.EXEC);
         execCount++;
     }
 
@@ -80,12 +93,12 @@ public class Log {
      * Logs warn action with {@code YELLOW} color, check the constants .kt file for the value
      *
      * @see Settings#YELLOW
-     * @see #log(String message, String color)
+     * @see #log(String message, Level level)
      *
      */
 
     public static void warn (String message) {
-        log(message, YELLOW);
+        log(message, Level.WARN);
         warnCount++;
     }
 
@@ -93,11 +106,11 @@ public class Log {
      * Logs error action with {@code RED} color, check the constants .kt file for the value
      *
      * @see Settings#RED
-     * @see #log(String message, String color)
+     * @see #log(String message, Level level)
      *
      */
     public static void error (String message) {
-        log(message, RED);
+        log(message, Level.ERROR);
         errorCount++;
     }
 
@@ -135,9 +148,10 @@ public class Log {
     }
 
     /**
-     * Used in {@code .log} file creation. Removes Ansi values and replaces them with {@code String} values
+     * Removes Ansi values and replaces them with {@code String} values. Log files are written with level tags directly,
+     * so this is only needed for lines colored elsewhere.
      *
-     * @see LogFileHandler#saveLogFiles()
+     * @see Level#tag()
      * @see #info(String message)
      * @see #exec(String message)
      * @see #error(String message)
@@ -157,7 +171,8 @@ public class Log {
     }
 
     /**
-     * Saves an action {@code String} with a specific colored timestamp. Methods bellow are use-cases with specific color timestamps
+     * Saves an action {@code String} with its level and the time of the call. Methods bellow are use-cases with specific levels.
+     * With {@link Settings#asyncLogging} the record is only queued and written by a background thread.
      *
      * @see #info(String message)
      * @see #exec(String message)
@@ -165,92 +180,75 @@ public class Log {
      * @see #warn(String message)
      *
      */
-    private static void log (String message, String color) {
-        String timestamp = "[" + LocalDateTime.now().format(Objects.requireNonNull(TIME)) + "] ";
+    private static void log (String message, Level level) {
+        LogRecord record = new LogRecord(level, System.currentTimeMillis(), message);
 
-        // Print to console (colored)
-        System.out.println(color + timestamp + RESET + message);
-        //Saving without RESET ensures we don't have to remove it later when saving to a file
-        //Still adding color so we can replace that with capitalized MESSAGE
-        //Yes OOP can be used here to replace the color value, but that will cause speed problems and will not benefit the program in any way
-        buffer.add(color + timestamp + message);
+        if (asyncLogging) {
+            asyncUsed = true;
+            AsyncAppender.append(record);
+            return;
+        }
+
+        write(record);
     }
 
+    private static volatile boolean asyncUsed;
+
     /**
-     * Method used for quick and pretty display printing of {@code SELECT} type queries, usually directly called from {@code selectOperation}
+     * Waits until every line logged so far was written to the console and the buffer. Only needed with
+     * {@link Settings#asyncLogging}, called before the log files are saved.
      *
-     * @see Query#fromString(String SQL)
+     * @see LogFileHandler#saveLogFiles()
      *
      */
-    public static final Consumer<List<String[]>> logSelect = rows -> {
-
-        if (rows == null || rows.isEmpty()) return;
-
-
-        //Sometimes queryResult can return malformed data with inconsistent column count,
-        // this code block ensures that the absolute max is found
-
-        Predicate<String[]> checkNullTail = strings -> {
-            if (strings[strings.length - 1] == null) return true;
-            return !strings[strings.length - 1].isBlank();
-        };
-
-        int columns = rows.stream()
-                .filter(checkNullTail)
-                .mapToInt(r -> r.length)
-                .max()
-                .orElse(0);
-
-
-        int[] maxWidthPerCell = new int[columns];
-
-        // compute max width for each column
-        for (String[] row : rows) {
-            for (int i = 0; i < columns; i++) {
-                //if the row cell is null or is out of scope for the row then make it null, otherwise get the value
-                String cell = (i < row.length && row[i] != null) ? row[i] : " ";
-                maxWidthPerCell[i] = Math.max(maxWidthPerCell[i], cell.length());
-            }
-        }
-
-        // print rows with proper alignment
-        for (String[] row : rows) {
-            StringBuilder formattedRow = getSpaceFormatedString(row, columns, maxWidthPerCell);
-            info(formattedRow.toString());
-        }
-    };
+    public static void flush () {
+        if (asyncUsed) AsyncAppender.flush();
+    }
 
     /**
-     * Generates a well formated view for a row with some size
+     * Writes a record to the console (colored), the log file (tagged) and the buffer, on the caller's thread or on the
+     * async writer thread. Formatting goes through the thread's reused {@link LogFormatter} buffer.
      *
-     * @see #logSelect
+     * @see AsyncAppender
      *
      */
-    private static StringBuilder getSpaceFormatedString (String[] row, int columns, int[] maxWidthPerCell) {
-        StringBuilder formattedRow = new StringBuilder();
-
-
-        for (int i = 0; i < columns; i++) {
-            String cell = (i < row.length && row[i] != null) ? row[i] : " ";
+    static void write (LogRecord record) {
+        LogFormatter formatter = LogFormatter.get();
 
-            formattedRow.append(" ");
-
-            int width = maxWidthPerCell[i];
+        // Print to console (colored)
+        formatter.console(record);
+        System.out.write(formatter.bytes(), 0, formatter.length());
 
-            formattedRow.append(String.format("%-" + (width) + "s", cell));
+        if (!streamLogs) {
+            buffer.add(record);
+            return;
+        }
 
+        formatter.file(record);
+        RollingFileSink.append(formatter.bytes(), formatter.length());
 
-            formattedRow.append(" ");
-            if (i < columns - 1) formattedRow.append(" | ");
+        //The file has every line, the buffer only keeps the latest ones so memory does not grow with uptime
+        synchronized (buffer) {
+            buffer.add(record);
+            if (buffer.size() >= 2 * Math.max(1, LOG_BUFFER_LINES)) buffer.subList(0, buffer.size() - LOG_BUFFER_LINES).clear();
         }
-        return formattedRow;
     }
 
+    /**
+     * Method used for quick and pretty display printing of {@code SELECT} type queries, usually directly called from {@code selectOperation}.
+     * The amount of printed rows and the cell width are bounded, see {@link TableRenderer}.
+     *
+     * @see Query#fromString(String SQL)
+     * @see TableRenderer#render(List)
+     *
+     */
+    public static final Consumer<List<String[]>> logSelect = TableRenderer::render;
+
 
     /**
      * Consumer for SQL code execution (CREATE, INSERT, UPDATE, DELETE).
      *
-     * @see Query#executeExpression(String query)
+     * @see Query#executeExpression(String query, Object... parameters)
      */
     public static final Consumer<String> logSQL = Log::exec;
 
@@ -6,13 +6,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 import static common.Settings.FILE;
+import static common.Settings.streamLogs;
 import static log.Log.*;
 
 public class LogFileHandler {
@@ -66,29 +69,43 @@ public class LogFileHandler {
             return;
         }
 
-        clearDir(Path.of(LOG_DIR, SUCCESSFUL_DIR));
-        clearDir(Path.of(LOG_DIR, CRASH_DIR));
+        clearDir(Path.of(LOG_DIR, SUCCESSFUL_DIR), false);
+        clearDir(Path.of(LOG_DIR, CRASH_DIR), false);
 
     }
 
-    private static void clearDir (Path logDir) {
+    /**
+     * Same as {@link #cleanUp()} for the regular logs, but without logging anything. Used by {@link RollingFileSink}
+     * after rolling a file, where logging would feed back into the file being rolled.
+     *
+     */
+    static synchronized void enforceRetention () {
+        if (MAX_LOGS <= 0 || !Files.isDirectory(Path.of(LOG_DIR, SUCCESSFUL_DIR))) return;
+
+        clearDir(Path.of(LOG_DIR, SUCCESSFUL_DIR), true);
+    }
+
+    private static void clearDir (Path logDir, boolean quiet) {
         List<Path> pathList = new ArrayList<>();
 
         Path base = logDir.toAbsolutePath().normalize();
         try{
             Files.walk(logDir).forEach(t -> {
                 Path abs = t.toAbsolutePath().normalize();
-                if (abs.startsWith(base) && !t.endsWith("latest.log")) {
-                    pathList.add(t);
-                } else {
+                if (abs.startsWith(base)) {
+                    if (Files.isRegularFile(t) && !t.endsWith("latest.log")) pathList.add(t);
+                } else if (!quiet) {
                     // Skip anything that resolves outside the target directory (symlink traversal protection)
                     warn("Skipped path outside of logDir: %s".formatted(t));
                 }
             });
         } catch (IOException e) {
+            if (quiet) return;
             CrashUtil.crash(e);
         }
 
+        //Log names are timestamps, so sorting by name puts the oldest first
+        pathList.sort(Comparator.comparing(path -> path.getFileName().toString()));
 
         int logCount = pathList.size();
 
@@ -96,13 +113,13 @@ public class LogFileHandler {
 
         String logForm = logTranslate.get(checkPlural(logCount));
 
-        if (logCount > 0)
+        if (logCount > 0 && !quiet)
             info("There are %d %s in memory".formatted(logCount, logForm));
 
         if (logCount > MAX_LOGS) {
             int difference = logCount - MAX_LOGS;
 
-            Log.error("There are over %d %s, deleting %d oldest"
+            if (!quiet) Log.error("There are over %d %s, deleting %d oldest"
                     .formatted(MAX_LOGS, logForm, difference));
 
             for (int i = 0; i < difference; i++) {
@@ -113,11 +130,12 @@ public class LogFileHandler {
                     try {
                         Files.delete(path);
                     } catch (IOException e) {
+                        if (quiet) continue;
                         CrashUtil.crash(e);
                     }
                 }
 
-                warn("Deleted %s".formatted(path));
+                if (!quiet) warn("Deleted %s".formatted(path));
             }
 
         }
@@ -125,8 +143,10 @@ public class LogFileHandler {
 
     /**
      * Saves {@code buffer} to two .log files. One is named with a timestamp and the second is latest.log.
+     * With {@link common.Settings#streamLogs} the lines are already on disk, so the active log file is moved instead.
      *
      * @see Log#buffer
+     * @see RollingFileSink
      *
      */
     public static void saveLogFiles () {
@@ -151,11 +171,21 @@ public class LogFileHandler {
             }
         }
 
-        List<String> log = new ArrayList<>();
+        Log.flush();
+
+        if (streamLogs) {
+            try {
+                if (RollingFileSink.closeTo(logFile)) {
+                    Files.copy(logFile, logLatest, StandardCopyOption.REPLACE_EXISTING);
+                    return;
+                }
+            } catch (IOException e) {
+                CrashUtil.crash(e);
+            }
+        }
 
-        getBuffer().stream()
-                .map(Log::stripAnsi)
-                .forEach(log::add);
+        //Buffered lines are already formatted with level tags, no ANSI values to strip
+        List<String> log = getBuffer();
 
         try {
             Files.write(logFile, log);
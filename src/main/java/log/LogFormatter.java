@@ -0,0 +1,148 @@
+package log;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static common.Settings.RESET;
+import static common.Settings.TIME;
+
+/**
+ * Turns {@link LogRecord}s into UTF-8 bytes inside a reused per-thread buffer, so writing a line does not allocate.
+ * The {@code [timestamp] } prefix is only formatted with {@link common.Settings#TIME} when the second changes
+ * (or the millisecond, if the pattern shows milliseconds) and reused as bytes in between.
+ * ANSI colors are only written for the console, file lines get the level tag instead, so they never need stripping.
+ *
+ * @see Log#write(LogRecord)
+ * @see RollingFileSink
+ *
+ */
+final class LogFormatter {
+
+    private static final ThreadLocal<LogFormatter> local = ThreadLocal.withInitial(LogFormatter::new);
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    private DateTimeFormatter formatter;
+    private boolean showsMillis;
+    private long cachedKey = Long.MIN_VALUE;
+    private byte[] timestamp = new byte[0];
+
+    private LogFormatter () {
+    }
+
+    static LogFormatter get () {
+        return local.get();
+    }
+
+    /**
+     * {@code <color>[timestamp] <reset>message} and a new line
+     *
+     */
+    LogFormatter console (LogRecord record) {
+        length = 0;
+        append(record.level().color());
+        appendTimestamp(record.time());
+        append(RESET);
+        append(record.message());
+        append(NEW_LINE);
+        return this;
+    }
+
+    /**
+     * {@code [LEVEL] [timestamp] message} and a new line
+     *
+     */
+    LogFormatter file (LogRecord record) {
+        length = 0;
+        append(record.level().tag());
+        appendTimestamp(record.time());
+        append(record.message());
+        append(NEW_LINE);
+        return this;
+    }
+
+    byte[] bytes () {
+        return bytes;
+    }
+
+    int length () {
+        return length;
+    }
+
+    /**
+     * The formatted line as {@code String} without the new line, allocates
+     *
+     */
+    String asString () {
+        return new String(bytes, 0, length - NEW_LINE.length(), StandardCharsets.UTF_8);
+    }
+
+    private void appendTimestamp (long time) {
+        DateTimeFormatter current = Objects.requireNonNull(TIME);
+
+        if (current != formatter) {
+            formatter = current;
+            showsMillis = !format(0).equals(format(1));
+            cachedKey = Long.MIN_VALUE;
+        }
+
+        long key = showsMillis ? time : Math.floorDiv(time, 1000);
+        if (key != cachedKey) {
+            cachedKey = key;
+            timestamp = ("[" + format(time) + "] ").getBytes(StandardCharsets.UTF_8);
+        }
+
+        ensure(timestamp.length);
+        System.arraycopy(timestamp, 0, bytes, length, timestamp.length);
+        length += timestamp.length;
+    }
+
+    private String format (long time) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).format(formatter);
+    }
+
+    /**
+     * UTF-8 encodes the text straight into the buffer
+     *
+     */
+    private void append (String text) {
+        int count = text.length();
+        ensure(count * 3);
+
+        for (int i = 0; i < count; i++) {
+            char c = text.charAt(i);
+
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[length++] = '?';
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure (int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
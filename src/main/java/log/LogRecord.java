@@ -0,0 +1,20 @@
+package log;
+
+/**
+ * A single log line as it was logged. Only turned into text by the sinks, the console gets it with ANSI colors and the
+ * log file with a level tag.
+ *
+ * @param time epoch milliseconds of the log call
+ * @see LogFormatter
+ *
+ */
+public record LogRecord(Level level, long time, String message) {
+
+    /**
+     * A {@code null} message is kept as {@code "null"}, like string concatenation did, so the line is never dropped
+     *
+     */
+    public LogRecord {
+        message = String.valueOf(message);
+    }
+}
@@ -0,0 +1,23 @@
+package log;
+
+/**
+ * What a logging call does when the asynchronous log buffer is full
+ *
+ * @see common.Settings#logOverflow
+ * @see AsyncAppender
+ *
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait until the writer thread made room, no line is ever lost
+     */
+    BLOCK,
+    /**
+     * Drop the line
+     */
+    DROP,
+    /**
+     * Drop lines below {@link common.Settings#logDropLevel}, wait for the others
+     */
+    DROP_BELOW_LEVEL
+}
@@ -0,0 +1,75 @@
+package log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Every slot has a sequence number telling whether
+ * it is free for the producer of a given position or filled for the consumer, so producers only race on one
+ * compare-and-set of the tail and never block each other.
+ *
+ * @see AsyncAppender
+ *
+ */
+class RingBuffer<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Only touched by the consumer thread
+     */
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    RingBuffer (int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element, returns {@code false} without waiting when the buffer is full. Safe from any thread.
+     */
+    boolean offer (T element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element or returns {@code null} when there is none. Only call from the consumer thread.
+     */
+    @SuppressWarnings("unchecked")
+    T poll () {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) return null;
+
+        T element = (T) slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, head + slots.length);
+        head++;
+        return element;
+    }
+}
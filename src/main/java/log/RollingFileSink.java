@@ -0,0 +1,188 @@
+package log;
+
+import common.Settings;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static common.Settings.FILE;
+import static log.Log.LOG_DIR;
+import static log.Log.SUCCESSFUL_DIR;
+
+/**
+ * Appends every log line to {@code LOG_DIR/current.log} while the program runs, instead of keeping the whole log in
+ * memory until {@link LogFileHandler#saveLogFiles()}. Lines go through a fixed size buffer into a {@link FileChannel}
+ * that is flushed every {@link Settings#LOG_FLUSH_INTERVAL} ms. When the file grows past {@link Settings#LOG_ROLL_SIZE}
+ * or gets older than {@link Settings#LOG_ROLL_INTERVAL}, it is moved to {@code SUCCESSFUL_DIR}, gzip compressed and
+ * the retention of {@link LogFileHandler#cleanUp()} is applied.
+ *
+ * @see Settings#streamLogs
+ * @see LogFileHandler#saveLogFiles()
+ *
+ */
+class RollingFileSink {
+
+    static final String ACTIVE_FILE = "current.log";
+
+    private static final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    private static FileChannel channel;
+    private static long size;
+    private static long opened;
+
+    private static ScheduledExecutorService flusher;
+
+    private RollingFileSink () {
+    }
+
+    /**
+     * Appends an already formatted line, including its line break, opening the file on first use and rolling it when needed
+     *
+     * @see LogFormatter#file(LogRecord)
+     *
+     */
+    static synchronized void append (byte[] bytes, int length) {
+        try {
+            if (channel == null) open();
+            if (size >= Settings.LOG_ROLL_SIZE || System.currentTimeMillis() - opened >= Settings.LOG_ROLL_INTERVAL) roll();
+
+            write(bytes, length);
+
+        } catch (IOException e) {
+            System.err.println("Could not write log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the buffered lines to the file
+     *
+     */
+    static synchronized void flush () {
+        if (channel == null) return;
+
+        try {
+            drain();
+        } catch (IOException e) {
+            System.err.println("Could not flush log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes the active file and moves it to {@code target}. The next line opens a new file.
+     *
+     * @return {@code false} if nothing was logged to a file yet
+     * @see LogFileHandler#saveLogFiles()
+     *
+     */
+    static synchronized boolean closeTo (Path target) throws IOException {
+        if (channel == null) return false;
+
+        drain();
+        channel.force(false);
+        channel.close();
+        channel = null;
+
+        Files.createDirectories(target.getParent());
+        Files.move(activeFile(), target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    private static Path activeFile () {
+        return Path.of(LOG_DIR, ACTIVE_FILE);
+    }
+
+    private static void open () throws IOException {
+        Path file = activeFile();
+        Files.createDirectories(file.getParent());
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        opened = System.currentTimeMillis();
+
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "log-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(10, Settings.LOG_FLUSH_INTERVAL);
+            flusher.scheduleAtFixedRate(RollingFileSink::flush, interval, interval, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(RollingFileSink::flush, "log-file-flush"));
+        }
+    }
+
+    private static void write (byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) drain();
+
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+        size += length;
+    }
+
+    private static void drain () throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Moves the active file into {@code SUCCESSFUL_DIR} and compresses it in the background
+     *
+     */
+    private static void roll () throws IOException {
+        String name = LocalDateTime.now().format(Objects.requireNonNull(FILE));
+        Path directory = Path.of(LOG_DIR, SUCCESSFUL_DIR);
+
+        Path rolled = directory.resolve(name + ".log");
+        for (int i = 1; Files.exists(rolled) || Files.exists(Path.of(rolled + ".gz")); i++) {
+            rolled = directory.resolve("%s_%d.log".formatted(name, i));
+        }
+
+        closeTo(rolled);
+        open();
+
+        Path target = rolled;
+        if (Settings.compressLogs) {
+            Thread.ofVirtual().name("log-compress").start(() -> compress(target));
+        } else {
+            LogFileHandler.enforceRetention();
+        }
+    }
+
+    private static void compress (Path file) {
+        Path compressed = Path.of(file + ".gz");
+
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GzipCompressorOutputStream(Files.newOutputStream(compressed))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Could not compress log file %s: %s".formatted(file, e.getMessage()));
+            return;
+        }
+
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete compressed log file %s: %s".formatted(file, e.getMessage()));
+        }
+
+        LogFileHandler.enforceRetention();
+    }
+}
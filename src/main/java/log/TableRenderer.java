@@ -0,0 +1,206 @@
+package log;
+
+import sql.query.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static common.Settings.SELECT_MAX_CELL_WIDTH;
+import static common.Settings.SELECT_MAX_ROWS;
+import static common.Settings.SELECT_SAMPLE_ROWS;
+
+/**
+ * Prints {@code SELECT} results as an aligned table through {@link Log#info(String)} while keeping the cost bounded.
+ * Column widths are measured in one pass over the first {@link common.Settings#SELECT_SAMPLE_ROWS} rows, cells are
+ * padded from a shared space buffer and cut at {@link common.Settings#SELECT_MAX_CELL_WIDTH}, and only
+ * {@link common.Settings#SELECT_MAX_ROWS} rows are printed, followed by a {@code N more rows} line.
+ * Rows past the sample keep the measured widths, longer cells are cut to fit.
+ *
+ * @see Log#logSelect
+ * @see #render(Cursor)
+ *
+ */
+public final class TableRenderer {
+
+    private static final String ELLIPSIS = "...";
+    private static final String SEPARATOR = " | ";
+
+    private static volatile char[] spaces = new char[0];
+    private static volatile char[] dashes = new char[0];
+
+    private final int[] widths;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private TableRenderer (int[] widths) {
+        this.widths = widths;
+    }
+
+    /**
+     * Renders rows in the layout returned by {@code selectOperation}: the column names, the empty separator row and then
+     * the values. Lists without the separator row are printed as they are, the first row still being the header.
+     *
+     */
+    public static void render (List<String[]> rows) {
+        if (rows == null || rows.isEmpty()) return;
+
+        String[] header = rows.get(0);
+        int first = rows.size() > 1 && isSeparator(rows.get(1)) ? 2 : 1;
+        List<String[]> values = rows.subList(first, rows.size());
+
+        int shown = limit(values.size());
+        TableRenderer renderer = measure(header, values.subList(0, Math.min(shown, sample())));
+
+        renderer.header(header);
+        for (int i = 0; i < shown; i++) {
+            renderer.row(values.get(i));
+        }
+
+        if (values.size() > shown) Log.info("... %d more rows".formatted(values.size() - shown));
+    }
+
+    /**
+     * Renders a cursor while reading it, without keeping more than the sample in memory. Reading stops after
+     * {@link common.Settings#SELECT_MAX_ROWS} rows, the rest of the cursor is not fetched, and the cursor is closed.
+     *
+     */
+    public static void render (Cursor cursor) {
+        try (cursor) {
+            render(cursor.getColumnNames(), cursor);
+        }
+    }
+
+    /**
+     * Renders rows from any iterator with the given column names. Consumes at most
+     * {@link common.Settings#SELECT_MAX_ROWS} + 1 rows.
+     *
+     */
+    public static void render (String[] header, Iterator<String[]> rows) {
+        int max = limit(Integer.MAX_VALUE);
+
+        List<String[]> sample = new ArrayList<>();
+        while (sample.size() < Math.min(max, sample()) && rows.hasNext()) {
+            sample.add(rows.next());
+        }
+
+        TableRenderer renderer = measure(header, sample);
+
+        renderer.header(header);
+        for (String[] row : sample) {
+            renderer.row(row);
+        }
+
+        int shown = sample.size();
+        while (shown < max && rows.hasNext()) {
+            renderer.row(rows.next());
+            shown++;
+        }
+
+        if (rows.hasNext()) Log.info("... more rows");
+    }
+
+    private static TableRenderer measure (String[] header, List<String[]> sample) {
+        int columns = header.length;
+        for (String[] row : sample) {
+            columns = Math.max(columns, row.length);
+        }
+
+        int maxWidth = SELECT_MAX_CELL_WIDTH > 0 ? Math.max(SELECT_MAX_CELL_WIDTH, ELLIPSIS.length() + 1) : Integer.MAX_VALUE;
+        int[] widths = new int[columns];
+
+        widen(widths, header, maxWidth);
+        for (String[] row : sample) {
+            widen(widths, row, maxWidth);
+        }
+
+        for (int i = 0; i < columns; i++) {
+            widths[i] = Math.max(1, widths[i]);
+            ensureFill(widths[i]);
+        }
+
+        return new TableRenderer(widths);
+    }
+
+    private static void widen (int[] widths, String[] row, int maxWidth) {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] != null && row[i].length() > widths[i]) widths[i] = Math.min(row[i].length(), maxWidth);
+        }
+    }
+
+    private static synchronized void ensureFill (int width) {
+        if (spaces.length >= width) return;
+
+        int size = Math.max(width, spaces.length * 2);
+        char[] newSpaces = new char[size];
+        char[] newDashes = new char[size];
+        Arrays.fill(newSpaces, ' ');
+        Arrays.fill(newDashes, '-');
+
+        dashes = newDashes;
+        spaces = newSpaces;
+    }
+
+    private void header (String[] header) {
+        row(header);
+
+        char[] fill = dashes;
+        line.setLength(0);
+        for (int i = 0; i < widths.length; i++) {
+            line.append('-').append(fill, 0, widths[i]).append('-');
+            if (i < widths.length - 1) line.append("-+-");
+        }
+        Log.info(line.toString());
+    }
+
+    private void row (String[] row) {
+        char[] fill = spaces;
+        line.setLength(0);
+
+        for (int i = 0; i < widths.length; i++) {
+            int start = line.length();
+            String cell = i < row.length ? row[i] : null;
+
+            line.append(' ');
+            if (cell != null) appendCell(cell, widths[i]);
+
+            int padding = widths[i] + 1 - (line.length() - start);
+            line.append(fill, 0, padding).append(' ');
+
+            if (i < widths.length - 1) line.append(SEPARATOR);
+        }
+
+        Log.info(line.toString());
+    }
+
+    /**
+     * Appends the cell cut to {@code width} chars, line breaks and tabs become spaces so one row stays on one line
+     *
+     */
+    private void appendCell (String cell, int width) {
+        boolean cut = cell.length() > width && width > ELLIPSIS.length();
+        int end = cut ? width - ELLIPSIS.length() : Math.min(cell.length(), width);
+
+        for (int i = 0; i < end; i++) {
+            char c = cell.charAt(i);
+            line.append(c == '\n' || c == '\r' || c == '\t' ? ' ' : c);
+        }
+
+        if (cut) line.append(ELLIPSIS);
+    }
+
+    private static boolean isSeparator (String[] row) {
+        for (String cell : row) {
+            if (cell != null && !cell.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private static int limit (int rows) {
+        return SELECT_MAX_ROWS > 0 ? Math.min(rows, SELECT_MAX_ROWS) : rows;
+    }
+
+    private static int sample () {
+        return SELECT_SAMPLE_ROWS > 0 ? SELECT_SAMPLE_ROWS : Integer.MAX_VALUE;
+    }
+}
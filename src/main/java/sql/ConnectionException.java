@@ -0,0 +1,25 @@
+package sql;
+
+import java.io.Serial;
+import java.sql.SQLException;
+
+/**
+ * Thrown by {@link sql.query.Query} when no connection could be borrowed, because the credentials are missing, the server
+ * can not be reached or the pool stayed full. Nothing was sent to the server and the program keeps running, so the
+ * call can simply be retried.
+ * @see SqlConnection#borrow(boolean)
+ * **/
+public class ConnectionException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ConnectionException (SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause () {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,279 @@
+package sql;
+
+import common.Settings;
+import log.Log;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of JDBC connections, opened with {@link #open(String, String, String)}. Connections are borrowed with
+ * {@link #borrow()} and handed back by closing the returned {@link PooledConnection}. Idle connections above the minimum
+ * size are evicted after they have not been used for the idle timeout, and every connection is validated with
+ * {@link Connection#isValid(int)} before it is handed out.
+ * <p>
+ * Works with any JDBC url, for example {@code jdbc:sqlite:test.db} through the bundled sqlite-jdbc driver.
+ *
+ * @see SqlConnection#borrow()
+ * @see Settings#POOL_MAX_SIZE
+ * **/
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final Dialect dialect;
+    private final String username;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeout;
+    private final long idleTimeout;
+    private final int validationTimeout;
+
+    /**
+     * One permit per connection that may be handed out, this is what bounds the pool
+     * **/
+    private final Semaphore permits;
+    /**
+     * Idle connections, the head is the most recently returned one so hot connections are reused first
+     * **/
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean closed;
+
+    /**
+     * Opens a pool sized by the values in {@link Settings}
+     * @see #open(String, String, String, int, int, long, long, int)
+     * **/
+    public static ConnectionPool open (String url, String username, String password) throws SQLException {
+        return open(url, username, password,
+                Settings.POOL_MIN_SIZE, Settings.POOL_MAX_SIZE,
+                Settings.POOL_ACQUIRE_TIMEOUT, Settings.POOL_IDLE_TIMEOUT,
+                Settings.POOL_VALIDATION_TIMEOUT);
+    }
+
+    /**
+     * Opens a pool with {@code minSize} connections right away, so a wrong url fails here and not on the first query.
+     * Connections opened before a failure are closed again.
+     * @param acquireTimeout max time in ms {@link #borrow()} waits for a free connection
+     * @param idleTimeout time in ms after which an unused connection above {@code minSize} is closed
+     * @param validationTimeout timeout in seconds passed to {@link Connection#isValid(int)}
+     * **/
+    public static ConnectionPool open (String url, String username, String password,
+                                       int minSize, int maxSize, long acquireTimeout, long idleTimeout,
+                                       int validationTimeout) throws SQLException {
+
+        ConnectionPool pool = new ConnectionPool(url, username, password,
+                minSize, maxSize, acquireTimeout, idleTimeout, validationTimeout);
+        pool.start();
+        return pool;
+    }
+
+    private ConnectionPool (String url, String username, String password,
+                            int minSize, int maxSize, long acquireTimeout, long idleTimeout,
+                            int validationTimeout) {
+
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size min=%d max=%d".formatted(minSize, maxSize));
+        }
+
+        this.url = url;
+        this.dialect = Dialect.of(url);
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeout = acquireTimeout;
+        this.idleTimeout = idleTimeout;
+        this.validationTimeout = validationTimeout;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sql-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fills the pool to {@code minSize} and starts evicting idle connections
+     * **/
+    private void start () throws SQLException {
+        try {
+            for (int i = 0; i < minSize; i++) {
+                idle.offerLast(openConnection());
+            }
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        long period = Math.max(1_000, idleTimeout / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a validated connection from the pool, opening a new one when none are idle and the pool is not full.
+     * Blocks up to the acquire timeout when all {@code maxSize} connections are in use.
+     * Close the returned connection to give it back.
+     * @throws SQLTimeoutException when no connection became free in time
+     * @see PooledConnection#close()
+     * **/
+    public PooledConnection borrow () throws SQLException {
+
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        try {
+            if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No connection available after %d ms, all %d are in use"
+                        .formatted(acquireTimeout, maxSize));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) break;
+                discard(pooled);
+            }
+
+            if (pooled == null) pooled = openConnection();
+
+            pooled.lease();
+            return pooled;
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Called by {@link PooledConnection#close()}. Resets the transaction state and puts the connection back, or closes it
+     * when it is broken or the pool was closed in the meantime.
+     * **/
+    void release (PooledConnection pooled) {
+        try {
+            Connection connection = pooled.getConnection();
+
+            if (closed || connection.isClosed()) {
+                discard(pooled);
+                return;
+            }
+
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            pooled.touch();
+            idle.offerFirst(pooled);
+
+        } catch (SQLException e) {
+            Log.warn("Dropping broken pooled connection: " + e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Amount of physical connections currently open, idle or borrowed
+     * **/
+    public int getOpenCount () {
+        return open.get();
+    }
+
+    /**
+     * Amount of connections currently borrowed
+     * **/
+    public int getActiveCount () {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getIdleCount () {
+        return idle.size();
+    }
+
+    public int getMaxSize () {
+        return maxSize;
+    }
+
+    public String getUrl () {
+        return url;
+    }
+
+    public Dialect getDialect () {
+        return dialect;
+    }
+
+    /**
+     * Closes all idle connections and stops handing out new ones. Borrowed connections are closed when they are returned.
+     * **/
+    @Override
+    public void close () {
+        closed = true;
+        evictor.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private boolean isUsable (PooledConnection pooled) {
+        if (open.get() > minSize && pooled.getIdleTime() > idleTimeout) return false;
+
+        try {
+            return pooled.getConnection().isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection () throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        open.incrementAndGet();
+        return new PooledConnection(this, connection);
+    }
+
+    private void discard (PooledConnection pooled) {
+        open.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Runs on the evictor thread. Closes connections that sat idle for too long, starting from the coldest one,
+     * and then tops the pool back up to {@code minSize}.
+     * **/
+    private void evictIdle () {
+        Iterator<PooledConnection> coldest = idle.descendingIterator();
+
+        while (coldest.hasNext() && open.get() > minSize) {
+            PooledConnection pooled = coldest.next();
+            if (pooled.getIdleTime() <= idleTimeout) break;
+            if (idle.removeLastOccurrence(pooled)) discard(pooled);
+        }
+
+        try {
+            while (!closed && open.get() < minSize) {
+                idle.offerLast(openConnection());
+            }
+        } catch (SQLException e) {
+            Log.warn("Could not refill connection pool: " + e.getMessage());
+        }
+    }
+}
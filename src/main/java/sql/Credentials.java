@@ -1,21 +1,32 @@
 package sql;
 
-import common.CrashUtil;
 import log.Log;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * Holds the url, username and password the library connects with. Nothing is read until the first connection is
+ * needed, then {@code credentials.txt} is loaded unless the values were set with {@link #set(String, String, String)}
+ * or {@link SqlConnection#configure()}. Problems are thrown to the caller instead of ending the program.
+ * @see SqlConnection
+ * **/
 public class Credentials {
 
     private Credentials(){}
 
-    private static String url;
-    private static String username;
-    private static String password;
+    /**
+     * File read by {@link #load()} when no credentials were set
+     * **/
+    public static final String DEFAULT_FILE = "credentials.txt";
+
+    private static volatile String url;
+    private static volatile String username;
+    private static volatile String password;
 
     public static String getUrl() {
         return url;
@@ -29,20 +40,56 @@ public class Credentials {
         return password;
     }
 
-    static {
-        inputCredentialFile("credentials.txt");
-    }
-
     private static final String urlPlaceholder = "<URL> ex. jdbc:mysql://localhost:3306/";
     private static final String usernamePlaceholder = "<USERNAME> ex. root";
     private static final String passholderPlaceholder = "<PASSWORD> ex. password";
 
+    /**
+     * Whether the credentials were set or loaded already
+     * **/
+    public static boolean isLoaded() {
+        return url != null;
+    }
+
+    /**
+     * Loads {@link #DEFAULT_FILE} if no credentials were set yet
+     * @throws IllegalStateException when the file is missing or still has the placeholder values
+     * @throws UncheckedIOException when the file can not be read
+     * @see SqlConnection#borrow()
+     **/
+    public static synchronized void load() {
+        if (!isLoaded()) inputCredentialFile(DEFAULT_FILE);
+    }
+
+    /**
+     * Sets the credentials directly instead of reading a file. The password may be empty.
+     * @see SqlConnection.Builder
+     **/
+    public static synchronized void set(String url, String username, String password) {
+        Objects.requireNonNull(url, "url");
+        Credentials.username = Objects.requireNonNullElse(username, "");
+        Credentials.password = Objects.requireNonNullElse(password, "");
+        Credentials.url = url;
+    }
 
     /**
      * Used for overriding the credentials of the connection
-     *
+     * @throws IllegalStateException when the file is missing, in which case a template is created, or has placeholder values
+     * @throws UncheckedIOException when the file can not be read
+     **/
+    public static synchronized void inputCredentialFile(String path) {
+        String[] values = read(path);
+        set(values[0], values[1], values[2]);
+
+        log.Log.info("Loaded credentials from file.");
+    }
+
+    /**
+     * Reads and checks a credentials file without using it
+     * @return the url, username and password, the password is empty when the file has no third line
+     * @see DataSource.Builder#credentialsFile(String)
      **/
-    public static void inputCredentialFile(String path) {
+    static String[] read(String path) {
 
         Path credentailsPath = Path.of(path);
 
@@ -52,32 +99,33 @@ public class Credentials {
 
         try {
             var cred = Files.readAllLines(credentailsPath);
-            url = cred.get(0);
-            username = cred.get(1);
+            if (cred.size() < 2) throw new IllegalStateException("%s needs an url and a username line".formatted(path));
+
             //some connections are without password, we need to account for those by checking credentials.txt if it has a password or not
-            password = "";
+            String filePassword = "";
             if (cred.size() > 2) {
-                password = cred.get(2);
+                filePassword = cred.get(2);
             }
-            log.Log.info("Loaded credentials from file.");
 
-            checkValid();
+            checkValid(cred.get(0), cred.get(1), filePassword);
+            return new String[]{cred.get(0), cred.get(1), filePassword};
 
         } catch (IOException e) {
-            common.CrashUtil.crashViolently(e);
+            throw new UncheckedIOException("Could not read credentials from " + path, e);
         }
 
     }
 
     /**
-     * Used to check if the credential values are not the placeholder ones and if so it ends the project.
+     * Used to check if the credential values are not the placeholder ones
      *
+     * @throws IllegalStateException when a value is a placeholder
      * @see #passholderPlaceholder
      * @see #usernamePlaceholder
      * @see #urlPlaceholder
      *
      **/
-    private static void checkValid() {
+    private static void checkValid(String url, String username, String password) {
 
         boolean isSuitable = true;
         if (Objects.equals(urlPlaceholder, url)) {
@@ -93,32 +141,26 @@ public class Credentials {
             isSuitable = false;
         }
         if (!isSuitable) {
-            common.CrashUtil.crashViolently(new RuntimeException("Error in credentials! Check logs for the error!"));
+            throw new IllegalStateException("Error in credentials! Check logs for the error!");
         }
     }
 
     /**
-     * Used when the credential file does not exist and creates a new one with placeholder values. Also ends the project.
+     * Used when the credential file does not exist and creates a new one with placeholder values
      *
+     * @throws IllegalStateException always, after the template was written
      * @see #inputCredentialFile(String path)
      *
      **/
     private static void credentialsDoesNotExistError(Path path) {
         try {
             Log.error("Credentials.txt does not exist! Creating one...");
-            Files.createFile(path);
-
             Files.write(path, List.of(urlPlaceholder, usernamePlaceholder, passholderPlaceholder));
-
-            common.CrashUtil.crashViolently(
-                    new RuntimeException(
-                            "Credential file did not exist. Go to %s and fill in your information".formatted(path)
-                    )
-            );
-
         } catch (IOException e) {
-            CrashUtil.crash(e);
+            throw new UncheckedIOException("Could not create " + path, e);
         }
+
+        throw new IllegalStateException("Credential file did not exist. Go to %s and fill in your information".formatted(path));
     }
 
 
@@ -0,0 +1,198 @@
+package sql;
+
+import common.Settings;
+
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Named database with its own credentials, pool size and timeouts. The pool is opened on the first {@link #borrow()},
+ * a failed attempt is thrown to the caller and retried on the next one.
+ * <div style="margin:0px">
+ *     <p>{@code DataSource.builder("replica1").url("jdbc:sqlite:replica1.db").poolSize(0, 4).register();}</p>
+ * </div>
+ * @see DataSources
+ * @see Route
+ * **/
+public final class DataSource implements AutoCloseable {
+
+    private final String name;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeout;
+    private final long idleTimeout;
+    private final int validationTimeout;
+
+    private volatile ConnectionPool pool;
+    private volatile boolean closed;
+
+    private DataSource (Builder builder) {
+        this.name = builder.name;
+        this.url = builder.url;
+        this.username = builder.username;
+        this.password = builder.password;
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.acquireTimeout = builder.acquireTimeout;
+        this.idleTimeout = builder.idleTimeout;
+        this.validationTimeout = builder.validationTimeout;
+    }
+
+    /**
+     * Starts a data source, unset pool values fall back to {@link Settings}
+     * **/
+    public static Builder builder (String name) {
+        return new Builder(name);
+    }
+
+    public static final class Builder {
+
+        private final String name;
+        private String url;
+        private String username = "";
+        private String password = "";
+
+        private int minSize = Settings.POOL_MIN_SIZE;
+        private int maxSize = Settings.POOL_MAX_SIZE;
+        private long acquireTimeout = Settings.POOL_ACQUIRE_TIMEOUT;
+        private long idleTimeout = Settings.POOL_IDLE_TIMEOUT;
+        private int validationTimeout = Settings.POOL_VALIDATION_TIMEOUT;
+
+        private Builder (String name) {
+            this.name = Objects.requireNonNull(name, "name");
+        }
+
+        public Builder url (String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder username (String username) {
+            this.username = Objects.requireNonNullElse(username, "");
+            return this;
+        }
+
+        public Builder password (String password) {
+            this.password = Objects.requireNonNullElse(password, "");
+            return this;
+        }
+
+        /**
+         * Reads the url, username and password from a file in the {@code credentials.txt} format right away
+         * @throws IllegalStateException when the file is missing or has placeholder values
+         * @see Credentials#inputCredentialFile(String)
+         * **/
+        public Builder credentialsFile (String path) {
+            String[] values = Credentials.read(path);
+            this.url = values[0];
+            this.username = values[1];
+            this.password = values[2];
+            return this;
+        }
+
+        public Builder poolSize (int minSize, int maxSize) {
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @see SqlConnection.Builder#timeouts(long, long, int)
+         * **/
+        public Builder timeouts (long acquireTimeout, long idleTimeout, int validationTimeout) {
+            this.acquireTimeout = acquireTimeout;
+            this.idleTimeout = idleTimeout;
+            this.validationTimeout = validationTimeout;
+            return this;
+        }
+
+        public DataSource build () {
+            if (url == null) throw new IllegalStateException("Data source %s has no url".formatted(name));
+            if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+                throw new IllegalArgumentException("Invalid pool size min=%d max=%d".formatted(minSize, maxSize));
+            }
+            return new DataSource(this);
+        }
+
+        /**
+         * Builds the data source and adds it to {@link DataSources}
+         * @see DataSources#register(DataSource)
+         * **/
+        public DataSource register () {
+            return DataSources.register(build());
+        }
+    }
+
+    /**
+     * Borrows a connection from this data source's pool, opening the pool on first use
+     * @see ConnectionPool#borrow()
+     * **/
+    public PooledConnection borrow () throws SQLException {
+        return getPool().borrow();
+    }
+
+    /**
+     * Returns the pool, opening it on first use
+     * @throws SQLException when the server can not be reached
+     * **/
+    public ConnectionPool getPool () throws SQLException {
+        ConnectionPool current = pool;
+        if (current != null) return current;
+
+        synchronized (this) {
+            if (closed) throw new SQLException("Data source %s is closed".formatted(name));
+            if (pool == null) {
+                pool = ConnectionPool.open(url, username, password,
+                        minSize, maxSize, acquireTimeout, idleTimeout, validationTimeout);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Connections currently borrowed, {@code 0} while the pool is not open
+     * **/
+    public int getActiveCount () {
+        ConnectionPool current = pool;
+        return current == null ? 0 : current.getActiveCount();
+    }
+
+    public boolean isOpen () {
+        return pool != null;
+    }
+
+    public String getName () {
+        return name;
+    }
+
+    public String getUrl () {
+        return url;
+    }
+
+    public Dialect getDialect () {
+        return Dialect.of(url);
+    }
+
+    public int getMaxSize () {
+        return maxSize;
+    }
+
+    /**
+     * Closes the pool, the data source can not be borrowed from afterwards
+     * **/
+    @Override
+    public synchronized void close () {
+        closed = true;
+        if (pool != null) pool.close();
+        pool = null;
+    }
+
+    @Override
+    public String toString () {
+        return name + " (" + url + ")";
+    }
+}
@@ -0,0 +1,146 @@
+package sql;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of named {@link DataSource}s and the {@link Route}s between them. Every registered data source is also a
+ * route of its own name without replicas, {@link #route(String, String, Route.Balancing, String...)} adds routes with
+ * read replicas.
+ * <p>
+ * Queries run on the route selected for the thread with {@link #use(String)}, else on the default route, else on the
+ * connection of {@link SqlConnection}. So code that never touches this class keeps working unchanged.
+ * <div style="margin:0px">
+ *     <p>{@code DataSource.builder("primary").url("jdbc:sqlite:primary.db").register();}</p>
+ *     <p>{@code DataSource.builder("replica").url("jdbc:sqlite:replica.db").register();}</p>
+ *     <p>{@code DataSources.route("music", "primary", Route.Balancing.ROUND_ROBIN, "replica");}</p>
+ *     <p>{@code try (var scope = DataSources.use("music")) { Query.fromPreparedStatement("select * from songs"); }}</p>
+ * </div>
+ * @see SqlConnection#borrow(boolean)
+ * **/
+public final class DataSources {
+
+    private static final Map<String, DataSource> sources = new ConcurrentHashMap<>();
+    private static final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Route> selected = new ThreadLocal<>();
+    private static volatile Route defaultRoute;
+
+    private DataSources () {
+    }
+
+    /**
+     * Selection of a route for the current thread, closing it restores the previous selection
+     * @see #use(String)
+     * **/
+    public static final class Scope implements AutoCloseable {
+
+        private final Route previous;
+
+        private Scope (Route previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close () {
+            if (previous == null) selected.remove();
+            else selected.set(previous);
+        }
+    }
+
+    /**
+     * Adds a data source and a route of the same name to it
+     * @throws IllegalArgumentException when the name is taken
+     * **/
+    public static DataSource register (DataSource source) {
+        if (sources.putIfAbsent(source.getName(), source) != null) {
+            throw new IllegalArgumentException("Data source %s already exists".formatted(source.getName()));
+        }
+        routes.putIfAbsent(source.getName(), new Route(source.getName(), source, List.of(), Route.Balancing.ROUND_ROBIN));
+        return source;
+    }
+
+    /**
+     * @throws IllegalArgumentException when no data source has this name
+     * **/
+    public static DataSource get (String name) {
+        DataSource source = sources.get(name);
+        if (source == null) throw new IllegalArgumentException("Unknown data source " + name);
+        return source;
+    }
+
+    public static Collection<DataSource> getAll () {
+        return List.copyOf(sources.values());
+    }
+
+    /**
+     * Adds or replaces a route writing to {@code primary} and reading from {@code replicas}
+     * @throws IllegalArgumentException when a data source is not registered
+     * **/
+    public static Route route (String name, String primary, Route.Balancing balancing, String... replicas) {
+        List<DataSource> readers = new ArrayList<>(replicas.length);
+        for (String replica : replicas) readers.add(get(replica));
+
+        Route route = new Route(name, get(primary), readers, balancing);
+        routes.put(name, route);
+        return route;
+    }
+
+    /**
+     * @throws IllegalArgumentException when no route has this name
+     * **/
+    public static Route getRoute (String name) {
+        Route route = routes.get(name);
+        if (route == null) throw new IllegalArgumentException("Unknown route " + name);
+        return route;
+    }
+
+    /**
+     * Route used by threads that did not {@link #use(String)} one, {@code null} goes back to {@link SqlConnection}
+     * **/
+    public static void setDefaultRoute (@Nullable String name) {
+        defaultRoute = name == null ? null : getRoute(name);
+    }
+
+    /**
+     * Runs the queries of this thread on {@code name} until the returned scope is closed
+     * **/
+    public static Scope use (String name) {
+        return use(getRoute(name));
+    }
+
+    /**
+     * Same as {@link #use(String)}, {@code null} selects the default route
+     * **/
+    public static Scope use (@Nullable Route route) {
+        Scope scope = new Scope(selected.get());
+        if (route == null) selected.remove();
+        else selected.set(route);
+        return scope;
+    }
+
+    /**
+     * Route of the current thread, {@code null} when queries go to {@link SqlConnection}
+     * **/
+    @Nullable
+    public static Route current () {
+        Route route = selected.get();
+        return route != null ? route : defaultRoute;
+    }
+
+    /**
+     * Closes every data source and forgets every route
+     * @see Quit#end(long, long)
+     * **/
+    public static void close () {
+        defaultRoute = null;
+        routes.clear();
+        for (DataSource source : sources.values()) source.close();
+        sources.clear();
+    }
+}
@@ -0,0 +1,68 @@
+package sql;
+
+import java.util.Locale;
+
+/**
+ * The SQL flavour behind a connection url, for the few statements that differ between servers
+ * @see ConnectionPool#getDialect()
+ * **/
+public enum Dialect {
+
+    MYSQL("EXPLAIN ", '`', 65_535),
+    SQLITE("EXPLAIN QUERY PLAN ", '"', 999),
+    OTHER(null, '"', 2_000);
+
+    private final String explainPrefix;
+    private final char quote;
+    private final int maxParameters;
+
+    Dialect (String explainPrefix, char quote, int maxParameters) {
+        this.explainPrefix = explainPrefix;
+        this.quote = quote;
+        this.maxParameters = maxParameters;
+    }
+
+    /**
+     * Detects the dialect from a jdbc url, MariaDB counts as MySQL
+     * **/
+    public static Dialect of (String url) {
+        String lower = url == null ? "" : url.toLowerCase(Locale.ROOT);
+
+        if (lower.startsWith("jdbc:mysql:") || lower.startsWith("jdbc:mariadb:")) return MYSQL;
+        if (lower.startsWith("jdbc:sqlite:")) return SQLITE;
+        return OTHER;
+    }
+
+    /**
+     * Wraps a statement in the dialect's {@code EXPLAIN}, or returns {@code null} when the dialect or the statement
+     * has no plan to show. Only {@code SELECT}, {@code INSERT}, {@code UPDATE}, {@code DELETE}, {@code REPLACE} and
+     * {@code WITH} statements are explained.
+     * **/
+    public String explain (String sql) {
+        if (explainPrefix == null) return null;
+
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) end++;
+
+        return switch (trimmed.substring(0, end).toLowerCase(Locale.ROOT)) {
+            case "select", "insert", "update", "delete", "replace", "with" -> explainPrefix + trimmed;
+            default -> null;
+        };
+    }
+
+    /**
+     * Quotes an identifier, quotes inside it are doubled
+     * **/
+    public String quote (String identifier) {
+        String q = String.valueOf(quote);
+        return q + identifier.replace(q, q + q) + q;
+    }
+
+    /**
+     * Most {@code ?} placeholders one statement may have. SQLite builds before 3.32 allow 999, so that is the safe value.
+     * **/
+    public int getMaxParameters () {
+        return maxParameters;
+    }
+}
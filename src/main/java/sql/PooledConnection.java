@@ -0,0 +1,108 @@
+package sql;
+
+import common.Settings;
+import log.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Closing it returns the connection to the pool instead of closing
+ * the physical connection, so it is meant to be used in a try-with-resources block.
+ * @see ConnectionPool#borrow()
+ * @see SqlConnection#borrow()
+ * **/
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+
+    private volatile long lastUsed = System.nanoTime();
+    /**
+     * Amount of open borrows, more than one while a {@link Transaction} hands its connection out
+     * **/
+    private int leases;
+
+    PooledConnection (ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection, Settings.STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * The physical JDBC connection. Do not close it, close this object instead.
+     * **/
+    public Connection getConnection () {
+        return connection;
+    }
+
+    /**
+     * The dialect of the pool this connection came from
+     * **/
+    public Dialect getDialect () {
+        return pool.getDialect();
+    }
+
+    /**
+     * Takes a prepared statement for this SQL out of the connection's statement cache, preparing it on a miss.
+     * Hand it back with {@link #releaseStatement(String, PreparedStatement)} when done, or with
+     * {@link #discardStatement(PreparedStatement)} when it failed.
+     * @see StatementCache
+     * **/
+    public PreparedStatement prepareStatement (String sql) throws SQLException {
+        return statementCache.prepare(sql);
+    }
+
+    /**
+     * Returns a statement from {@link #prepareStatement(String)} to the cache for reuse
+     * **/
+    public void releaseStatement (String sql, PreparedStatement statement) {
+        statementCache.release(sql, statement);
+    }
+
+    /**
+     * Closes a statement from {@link #prepareStatement(String)} instead of caching it
+     * **/
+    public void discardStatement (PreparedStatement statement) {
+        statementCache.discard(statement);
+    }
+
+    /**
+     * Gives the connection back to its pool once every borrow of it was closed.
+     * Calling it after the connection went back has no effect.
+     * **/
+    @Override
+    public void close () {
+        if (leases <= 0) return;
+        if (--leases == 0) pool.release(this);
+    }
+
+    void lease () {
+        leases++;
+    }
+
+    void touch () {
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Time in ms since the connection was last returned to the pool
+     * **/
+    long getIdleTime () {
+        return (System.nanoTime() - lastUsed) / 1_000_000;
+    }
+
+    /**
+     * Closes the physical connection and its cached statements, used when the pool evicts or drops it
+     * **/
+    void closePhysical () {
+        statementCache.invalidate();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Log.warn("Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package sql;
 
-import common.CrashUtil;
 import log.LogFileHandler;
+import sql.query.DiskCache;
+import sql.query.QueryMetrics;
+import sql.query.ResultCache;
 
-import java.sql.SQLException;
-
+import static common.Settings.diskCache;
+import static common.Settings.queryMetrics;
+import static common.Settings.resultCache;
 import static log.Log.info;
 
 /**
@@ -16,18 +19,20 @@ public class Quit {
     private Quit(){}
 
     /**
-     * Safely closes the SQL connection, displays total runtime and begins the process of saving the log. This will also execute System.exit(0)
+     * Safely closes the SQL connection pool, every {@link DataSource} and the disk cache, displays total runtime and begins the process of saving the log. This will also execute System.exit(0)
      * @see LogFileHandler#saveLogFiles()
      * **/
     public static void end (long start, long end){
-        try {
-            SqlConnection.connection.close();
-        } catch (SQLException e) {
-            CrashUtil.crash(e);
-        }
+        SqlConnection.close();
+        DataSources.close();
 
         info("End of program");
         info("Program took %f seconds to execute".formatted((end - start)*1e-9));
+        info("Statement cache " + StatementCache.getStatistics());
+        if (resultCache) info("Result cache " + ResultCache.getStatistics());
+        if (diskCache) info("Disk cache " + DiskCache.getStatistics());
+        DiskCache.close();
+        if (queryMetrics) QueryMetrics.report();
         LogFileHandler.saveLogFiles();
     }
 
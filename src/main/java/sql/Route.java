@@ -0,0 +1,109 @@
+package sql;
+
+import log.Log;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A primary {@link DataSource} for writes and any number of replicas for reads. {@code SELECT}s go to a replica picked
+ * by the {@link Balancing}, everything else and every {@link Transaction} goes to the primary. When a replica can not be
+ * borrowed from, the read falls back to the primary.
+ * <p>
+ * Replicas may lag behind the primary, a read right after a write outside a transaction can miss it. Run both in a
+ * {@link Transaction} when that matters, transactions read from the primary.
+ * @see DataSources#route(String, String, Balancing, String...)
+ * **/
+public final class Route {
+
+    /**
+     * How a replica is picked for a read
+     * **/
+    public enum Balancing {
+        /** Every replica in turn */
+        ROUND_ROBIN,
+        /** The replica with the fewest borrowed connections, ties go round robin */
+        LEAST_LOADED
+    }
+
+    private final String name;
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final Balancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+
+    Route (String name, DataSource primary, List<DataSource> replicas, Balancing balancing) {
+        this.name = name;
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.balancing = balancing;
+    }
+
+    /**
+     * Borrows from a replica when {@code read} and the route has replicas, from the primary otherwise
+     * **/
+    public PooledConnection borrow (boolean read) throws SQLException {
+        return borrow(target(read));
+    }
+
+    /**
+     * Borrows from a data source picked by {@link #target(boolean)}, a replica that fails falls back to the primary
+     * **/
+    public PooledConnection borrow (DataSource target) throws SQLException {
+        if (target == primary) return primary.borrow();
+
+        try {
+            return target.borrow();
+        } catch (SQLException e) {
+            Log.warn("Replica %s failed, reading from %s instead: %s".formatted(target.getName(), primary.getName(), e.getMessage()));
+            return primary.borrow();
+        }
+    }
+
+    /**
+     * The data source a read or a write goes to next, without borrowing
+     * **/
+    public DataSource target (boolean read) {
+        return read && !replicas.isEmpty() ? reader() : primary;
+    }
+
+    private DataSource reader () {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (balancing == Balancing.ROUND_ROBIN) return replicas.get(start);
+
+        DataSource least = null;
+        double leastLoad = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            DataSource replica = replicas.get((start + i) % size);
+            double load = (double) replica.getActiveCount() / replica.getMaxSize();
+            if (load < leastLoad) {
+                least = replica;
+                leastLoad = load;
+            }
+        }
+        return least;
+    }
+
+    public String getName () {
+        return name;
+    }
+
+    public DataSource getPrimary () {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas () {
+        return replicas;
+    }
+
+    public Balancing getBalancing () {
+        return balancing;
+    }
+
+    @Override
+    public String toString () {
+        return name + " -> " + primary.getName() + (replicas.isEmpty() ? "" : " " + replicas.stream().map(DataSource::getName).toList());
+    }
+}
@@ -1,17 +1,26 @@
 package sql;
 
 import common.CrashUtil;
+import common.Settings;
 import log.Log;
+import org.jetbrains.annotations.Nullable;
 import sql.query.Query;
 
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 import static sql.Credentials.*;
 
 /**
- * Holder class for the SQL Connection. Use this class' {@code static final connection} to access the server
- * @see #connection
+ * Facade over the library's {@link ConnectionPool}. Use {@link #borrow()} to get a connection to the server and close it
+ * to give it back.
+ * <p>
+ * Nothing happens when the class is loaded. The credentials are read and the pool is opened on the first
+ * {@link #borrow()}, or right away with {@link #initializeConnection()} or {@link Builder#connect()}. Failures are thrown
+ * to the caller and the next call tries again, so a flaky server can simply be retried. {@link #warmUp()} opens the pool
+ * in the background during startup.
+ * @see #borrow()
+ * @see #configure()
  * @see sql.query.Query
  * **/
 public class SqlConnection {
@@ -19,12 +28,17 @@ public class SqlConnection {
     private SqlConnection(){}
 
     /**
-     * Used to access the server
-     * @see SqlConnection
+     * Used to access the server, every query borrows a connection from this pool. Created on first use.
+     * @see #getPool()
      * @see Query
      * **/
-    public static java.sql.Connection connection;
-    
+    private static volatile ConnectionPool pool;
+
+    /**
+     * Pool sizes from {@link #configure()}, {@code null} uses {@link common.Settings}
+     * **/
+    private static volatile Builder configuration;
+
     /**
      * Holds the exact time the Library initializes as {@code nanoTime}. Used for profiling
      * @see Quit#end(long start, long end)
@@ -32,23 +46,245 @@ public class SqlConnection {
     public static final long LIBRARY_START = System.nanoTime();
 
     /**
-     * Connects the lib to the database and reads a credentials file.
+     * Starts configuring the connection in code instead of {@code credentials.txt} and {@link common.Settings}.
+     * Unset pool values fall back to {@link common.Settings}.
+     * <div style="margin:0px">
+     *     <p>{@code SqlConnection.configure().url("jdbc:sqlite:music.db").poolSize(1, 4).apply();}</p>
+     * </div>
+     * **/
+    public static Builder configure(){
+        return new Builder();
+    }
+
+    /**
+     * Connection settings collected by {@link #configure()}
+     * **/
+    public static final class Builder {
+
+        private String url;
+        private String username = "";
+        private String password = "";
+        private String credentialsFile;
+
+        private int minSize = Settings.POOL_MIN_SIZE;
+        private int maxSize = Settings.POOL_MAX_SIZE;
+        private long acquireTimeout = Settings.POOL_ACQUIRE_TIMEOUT;
+        private long idleTimeout = Settings.POOL_IDLE_TIMEOUT;
+        private int validationTimeout = Settings.POOL_VALIDATION_TIMEOUT;
+
+        private Builder(){}
+
+        public Builder url(String url){
+            this.url = url;
+            return this;
+        }
+
+        public Builder username(String username){
+            this.username = username;
+            return this;
+        }
+
+        public Builder password(String password){
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * Reads the url, username and password from a file in the {@code credentials.txt} format instead
+         * @see Credentials#inputCredentialFile(String)
+         * **/
+        public Builder credentialsFile(String path){
+            this.credentialsFile = path;
+            return this;
+        }
+
+        public Builder poolSize(int minSize, int maxSize){
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param acquireTimeout ms {@link #borrow()} waits for a free connection
+         * @param idleTimeout ms after which an idle connection above the minimum is closed
+         * @param validationTimeout seconds a connection has to answer {@link java.sql.Connection#isValid(int)}
+         * **/
+        public Builder timeouts(long acquireTimeout, long idleTimeout, int validationTimeout){
+            this.acquireTimeout = acquireTimeout;
+            this.idleTimeout = idleTimeout;
+            this.validationTimeout = validationTimeout;
+            return this;
+        }
+
+        /**
+         * Stores the configuration and closes the current pool, the next {@link #borrow()} connects with it
+         * @throws IllegalStateException when the credentials file is missing or has placeholder values
+         * **/
+        public void apply(){
+            if (credentialsFile != null) Credentials.inputCredentialFile(credentialsFile);
+            else if (url != null) Credentials.set(url, username, password);
+
+            synchronized (SqlConnection.class) {
+                configuration = this;
+                close();
+            }
+        }
+
+        /**
+         * Same as {@link #apply()} and opens the pool right away
+         * @throws SQLException when the server can not be reached
+         * **/
+        public ConnectionPool connect() throws SQLException {
+            apply();
+            return getPool();
+        }
+
+        private ConnectionPool open() throws SQLException {
+            return ConnectionPool.open(Credentials.getUrl(), Credentials.getUsername(), Credentials.getPassword(),
+                    minSize, maxSize, acquireTimeout, idleTimeout, validationTimeout);
+        }
+    }
+
+    /**
+     * Reads the credentials if needed and opens the connection pool now instead of on the first query. Replaces an
+     * already open pool.
+     * @throws SQLException when the credentials are missing or the server can not be reached
      * @see Credentials
+     * @see ConnectionPool
+     * **/
+    public static void initializeConnection() throws SQLException {
+        synchronized (SqlConnection.class) {
+            close();
+        }
+        getPool();
+    }
+
+    /**
+     * Opens the pool on a background thread so the first query does not pay for connecting. Failures are logged and
+     * complete the future, the next {@link #borrow()} tries again.
+     * **/
+    public static CompletableFuture<ConnectionPool> warmUp(){
+        CompletableFuture<ConnectionPool> future = new CompletableFuture<>();
+
+        Thread.ofVirtual().name("sql-warm-up").start(() -> {
+            try {
+                future.complete(getPool());
+            } catch (SQLException | RuntimeException e) {
+                Log.warn("Connection warm up failed: " + e.getMessage());
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Borrows a connection for a write. Must be closed after use, which returns it to the pool.
+     * When the thread is in a {@link Transaction}, returns the transaction's connection instead.
+     * @throws SQLException when the pool could not be opened or no connection became free in time
+     * @see #borrow(boolean)
+     * @see ConnectionPool#borrow()
+     * **/
+    public static PooledConnection borrow() throws SQLException {
+        return borrow(false);
+    }
+
+    /**
+     * Borrows a connection of the route selected in {@link DataSources}, or of this class' own pool when none is.
+     * Reads go to a replica of the route, writes to its primary. A {@link Transaction} begun on the same route hands
+     * out its own connection for both.
+     * @param read whether only a {@code SELECT} runs on the connection
+     * @see Route#borrow(boolean)
+     * **/
+    public static PooledConnection borrow(boolean read) throws SQLException {
+        Route route = DataSources.current();
+
+        Transaction transaction = Transaction.current();
+        if (transaction != null && transaction.getRoute() == route) return transaction.lease();
+
+        return route == null ? getPool().borrow() : route.borrow(read);
+    }
+
+    /**
+     * Replaces the former {@code connection} field, which held one shared connection. Borrows a connection like
+     * {@link #borrow()}, it must be closed afterwards to give it back to the pool.
+     * <div style="margin:0px">
+     *     <p>{@code try (PooledConnection pooled = SqlConnection.borrow()) { pooled.getConnection()... }}</p>
+     * </div>
+     * @deprecated use {@link #borrow()} in a try-with-resources block
      * **/
-    public static void initializeConnection(){
+    @Deprecated
+    public static PooledConnection getConnection() throws SQLException {
+        return borrow();
+    }
 
-        if(getUrl().isEmpty() || getUsername().isEmpty() || getPassword().isEmpty()){
+    /**
+     * Returns the pool, opening it on first use
+     * @throws SQLException when the credentials are missing or the server can not be reached
+     * **/
+    public static ConnectionPool getPool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current != null) return current;
 
-            Credentials.inputCredentialFile("credentials.txt");
+        synchronized (SqlConnection.class) {
+            if (pool != null) return pool;
 
+            try {
+                Credentials.load();
+            } catch (RuntimeException e) {
+                throw new SQLException("Could not load credentials: " + e.getMessage(), e);
+            }
+
+            Builder builder = configuration;
+            pool = builder != null
+                    ? builder.open()
+                    : ConnectionPool.open(getUrl(), getUsername(), getPassword());
+            return pool;
         }
+    }
+
+    /**
+     * Returns the pool a read or a write on {@code route} goes to next, this class' own pool for {@code null}
+     * @see Route#target(boolean)
+     * **/
+    public static ConnectionPool getPool(@Nullable Route route, boolean read) throws SQLException {
+        return route == null ? getPool() : route.target(read).getPool();
+    }
+
+    /**
+     * Dialect of the database {@link #borrow()} connects to, read from the url without connecting. The primary of the
+     * route selected in {@link DataSources}, else this class' own pool. {@link Dialect#OTHER} when the credentials can not
+     * be loaded, the next {@link #borrow()} reports why.
+     * **/
+    public static Dialect getDialect(){
+        Route route = DataSources.current();
+        if (route != null) return route.getPrimary().getDialect();
+
+        ConnectionPool current = pool;
+        if (current != null) return current.getDialect();
 
         try {
-            connection = DriverManager.getConnection(getUrl(), getUsername(), getPassword());
-        } catch (SQLException e) {
-            common.CrashUtil.crashViolently(e);
+            Credentials.load();
+        } catch (RuntimeException e) {
+            return Dialect.OTHER;
         }
+        return Dialect.of(getUrl());
+    }
 
+    /**
+     * Whether the pool was opened already
+     * **/
+    public static boolean isInitialized(){
+        return pool != null;
+    }
+
+    /**
+     * Closes the pool and every idle connection in it. The next {@link #borrow()} opens a new one.
+     * @see Quit#end(long start, long end)
+     * **/
+    public static synchronized void close(){
+        if (pool != null) pool.close();
+        pool = null;
     }
 
     /**
@@ -57,7 +293,7 @@ public class SqlConnection {
      * **/
     public static void printCredentials(){
         String displayPassword = getPassword();
-        if(getPassword().isBlank()) displayPassword = "NONE>";
+        if(displayPassword == null || displayPassword.isBlank()) displayPassword = "NONE>";
 
         Log.info("url: %s, username: %s, password: %s".formatted(getUrl(), getUsername(), displayPassword));
     }
@@ -67,14 +303,18 @@ public class SqlConnection {
      * @see #getInformation()
      * **/
     public static int getPing(){
-        try {
-            return connection.getNetworkTimeout();
+        try (PooledConnection pooled = borrow()) {
+            return getPing(pooled);
         } catch (SQLException e) {
             common.CrashUtil.catchError(e);
         }
         return -1;
     }
 
+    private static int getPing (PooledConnection pooled) throws SQLException {
+        return pooled.getConnection().getNetworkTimeout();
+    }
+
     /**
      * Prints basic information about the connection, fails when the connection is invalid/not initialized.
      * Also fails if the ping is over 5 seconds
@@ -82,9 +322,9 @@ public class SqlConnection {
      * @see #printCredentials()
      * **/
     public static String getInformation() {
-        try {
-            if(connection.isValid(5)){
-                return "Connection is stable and valid at URL %s ping %s ms".formatted(getUrl(), getPing());
+        try (PooledConnection pooled = borrow()) {
+            if(pooled.getConnection().isValid(5)){
+                return "Connection is stable and valid at URL %s ping %s ms".formatted(getUrl(), getPing(pooled));
             }
         } catch (SQLException e) {
             CrashUtil.catchError(e);
@@ -92,9 +332,4 @@ public class SqlConnection {
 
         return "";
     }
-
-    //Initializing the connection by default at standard class initialization
-    static {
-        initializeConnection();
-    }
 }
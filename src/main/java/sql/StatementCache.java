@@ -0,0 +1,130 @@
+package sql;
+
+import common.Settings;
+import log.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for one connection, keyed by the SQL text. Statements are checked out with
+ * {@link #prepare(String)} and handed back with {@link #release(String, PreparedStatement)}, so a statement is never
+ * shared by two callers at once. Everything is closed when the owning connection is closed or recycled by the pool.
+ * @see PooledConnection#prepareStatement(String)
+ * @see Settings#STATEMENT_CACHE_SIZE
+ * **/
+public class StatementCache {
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    private final Connection connection;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    private boolean invalidated;
+
+    StatementCache (Connection connection, int capacity) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached statement for this SQL or prepares a new one. The statement belongs to the caller until it is
+     * given back with {@link #release(String, PreparedStatement)} or {@link #discard(PreparedStatement)}.
+     * **/
+    synchronized PreparedStatement prepare (String sql) throws SQLException {
+        PreparedStatement statement = statements.remove(sql);
+
+        if (statement != null) {
+            hits.increment();
+            return statement;
+        }
+
+        misses.increment();
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Puts a statement back so the next {@link #prepare(String)} of the same SQL can reuse it.
+     * Evicts and closes the least recently used statements when the cache is over its capacity.
+     * **/
+    synchronized void release (String sql, PreparedStatement statement) {
+        if (invalidated || capacity <= 0 || statements.containsKey(sql)) {
+            close(statement);
+            return;
+        }
+
+        try {
+            statement.clearParameters();
+        } catch (SQLException e) {
+            close(statement);
+            return;
+        }
+
+        statements.put(sql, statement);
+
+        Iterator<Map.Entry<String, PreparedStatement>> eldest = statements.entrySet().iterator();
+        while (statements.size() > capacity && eldest.hasNext()) {
+            close(eldest.next().getValue());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Closes a statement that failed instead of returning it, it may be left in a broken state
+     * **/
+    void discard (PreparedStatement statement) {
+        close(statement);
+    }
+
+    /**
+     * Closes every cached statement, called when the connection is closed or recycled
+     * @see PooledConnection#closePhysical()
+     * **/
+    synchronized void invalidate () {
+        invalidated = true;
+        statements.values().forEach(StatementCache::close);
+        statements.clear();
+    }
+
+    synchronized int size () {
+        return statements.size();
+    }
+
+    public static long getHits () {
+        return hits.sum();
+    }
+
+    public static long getMisses () {
+        return misses.sum();
+    }
+
+    public static long getEvictions () {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the statement cache counters of all connections in a neat format
+     * **/
+    public static String getStatistics () {
+        return "HITS=%d | MISSES=%d | EVICTIONS=%d"
+                .formatted(getHits(), getMisses(), getEvictions());
+    }
+
+    private static void close (PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Log.warn("Failed to close cached statement: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package sql;
+
+import org.jetbrains.annotations.Nullable;
+import sql.query.ResultCache;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Explicit transaction bound to the current thread. While it is active, every {@link SqlConnection#borrow()} on this
+ * thread, and so every {@link sql.query.Query} call, runs on the transaction's connection with auto-commit off.
+ * <div style="margin:0px">
+ *     <p>{@code Transaction.inTransaction(transaction -> Query.fromPreparedStatement("delete from songs where id = ?", 7))}</p>
+ * </div>
+ * @see #begin()
+ * @see #inTransaction(Work)
+ * @see common.Settings#scriptTransaction
+ * **/
+public class Transaction implements AutoCloseable {
+
+    /**
+     * How much of a script runs in one transaction
+     * @see common.Settings#scriptTransaction
+     * @see common.Settings#SCRIPT_COMMIT_INTERVAL
+     * **/
+    public enum Scope {
+        /** Every statement commits on its own, the JDBC default */
+        NONE,
+        /** Every script of {@code fromString}, {@code fromFile} or a sequence runs in its own transaction */
+        SCRIPT,
+        /** A whole {@code fromSequence} call runs in one transaction */
+        SEQUENCE
+    }
+
+    /**
+     * Code run by {@link #inTransaction(Work)}
+     * **/
+    @FunctionalInterface
+    public interface Work<T> {
+        T run (Transaction transaction) throws SQLException;
+    }
+
+    private static final ThreadLocal<Transaction> current = new ThreadLocal<>();
+
+    private final PooledConnection pooled;
+    private final Route route;
+    private boolean finished;
+
+    /**
+     * Tables written so far, {@code null} when nothing was written. Their cached results are dropped once the writes are
+     * committed or rolled back.
+     * @see #recordWrite(Set)
+     * **/
+    private Set<String> written;
+    private boolean writtenUnknown;
+
+    private Transaction (PooledConnection pooled, Route route) {
+        this.pooled = pooled;
+        this.route = route;
+    }
+
+    /**
+     * Starts a transaction on a connection from the pool and binds it to the current thread. With a route selected in
+     * {@link DataSources}, the transaction runs on the route's primary and sticks to it, reads included.
+     * @throws IllegalStateException when this thread already has an active transaction
+     * **/
+    public static Transaction begin () throws SQLException {
+        if (current.get() != null) throw new IllegalStateException("A transaction is already active on this thread");
+
+        Route route = DataSources.current();
+        PooledConnection pooled = SqlConnection.borrow();
+        try {
+            pooled.getConnection().setAutoCommit(false);
+        } catch (SQLException e) {
+            pooled.close();
+            throw e;
+        }
+
+        Transaction transaction = new Transaction(pooled, route);
+        current.set(transaction);
+        return transaction;
+    }
+
+    /**
+     * Returns the transaction active on this thread, or {@code null}
+     * **/
+    public static Transaction current () {
+        return current.get();
+    }
+
+    /**
+     * Runs {@code work} in a transaction which is committed when it returns and rolled back when it throws.
+     * When the thread is already in a transaction, {@code work} runs inside a savepoint of it instead, so only its own
+     * changes are rolled back on failure.
+     * **/
+    public static <T> T inTransaction (Work<T> work) throws SQLException {
+        Transaction active = current.get();
+
+        if (active != null) {
+            Savepoint savepoint = active.savepoint();
+            try {
+                T result = work.run(active);
+                active.releaseSavepoint(savepoint);
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                active.rollback(savepoint);
+                throw e;
+            }
+        }
+
+        try (Transaction transaction = begin()) {
+            T result = work.run(transaction);
+            transaction.commit();
+            return result;
+        }
+    }
+
+    /**
+     * Commits and ends the transaction, the connection goes back to the pool
+     * **/
+    public void commit () throws SQLException {
+        checkActive();
+        try {
+            pooled.getConnection().commit();
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Rolls back and ends the transaction, the connection goes back to the pool
+     * **/
+    public void rollback () throws SQLException {
+        checkActive();
+        try {
+            pooled.getConnection().rollback();
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Commits everything done so far but keeps the transaction open, used to commit long scripts every N statements
+     * @see common.Settings#SCRIPT_COMMIT_INTERVAL
+     * **/
+    public void checkpoint () throws SQLException {
+        checkActive();
+        try {
+            pooled.getConnection().commit();
+        } finally {
+            invalidateWritten();
+        }
+    }
+
+    public Savepoint savepoint () throws SQLException {
+        checkActive();
+        return pooled.getConnection().setSavepoint();
+    }
+
+    public Savepoint savepoint (String name) throws SQLException {
+        checkActive();
+        return pooled.getConnection().setSavepoint(name);
+    }
+
+    /**
+     * Undoes everything done after the savepoint, the transaction stays active
+     * **/
+    public void rollback (Savepoint savepoint) throws SQLException {
+        checkActive();
+        pooled.getConnection().rollback(savepoint);
+    }
+
+    public void releaseSavepoint (Savepoint savepoint) throws SQLException {
+        checkActive();
+        pooled.getConnection().releaseSavepoint(savepoint);
+    }
+
+    /**
+     * The connection of the transaction, do not close it or change its auto-commit mode
+     * **/
+    public Connection getConnection () {
+        return pooled.getConnection();
+    }
+
+    /**
+     * Route the transaction was begun on, {@code null} for the connection of {@link SqlConnection}. Queries on other
+     * routes do not join the transaction.
+     * **/
+    @Nullable
+    public Route getRoute () {
+        return route;
+    }
+
+    public boolean isActive () {
+        return !finished;
+    }
+
+    /**
+     * Rolls back if the transaction was neither committed nor rolled back, so a try-with-resources block never leaves
+     * a transaction open
+     * **/
+    @Override
+    public void close () throws SQLException {
+        if (!finished) rollback();
+    }
+
+    /**
+     * Records that the transaction wrote to {@code tables}, an empty set when they are unknown. Called by the
+     * {@link ResultCache} instead of dropping the cached results right away.
+     * **/
+    public void recordWrite (Set<String> tables) {
+        if (written == null) written = new HashSet<>();
+        if (tables.isEmpty()) writtenUnknown = true;
+        written.addAll(tables);
+    }
+
+    /**
+     * Hands the transaction's connection to {@link SqlConnection#borrow()}, closing it only drops this lease
+     * **/
+    PooledConnection lease () {
+        pooled.lease();
+        return pooled;
+    }
+
+    private void checkActive () {
+        if (finished) throw new IllegalStateException("Transaction already ended");
+    }
+
+    private void finish () {
+        finished = true;
+        current.remove();
+        pooled.close();
+        invalidateWritten();
+    }
+
+    private void invalidateWritten () {
+        if (written == null) return;
+
+        ResultCache.invalidate(writtenUnknown ? Set.of() : written);
+        written = null;
+        writtenUnknown = false;
+    }
+}
@@ -0,0 +1,37 @@
+package sql.export;
+
+import java.sql.Types;
+
+/**
+ * How the values of a column are read from a {@link sql.query.Cursor} and written, decided once from its
+ * {@link Types} value. The ordinal is stored in columnar files, only add new kinds at the end.
+ * @see FormatWriter
+ * **/
+enum ColumnKind {
+
+    LONG,
+    DOUBLE,
+    BOOLEAN,
+    /** Exact numbers, read as text so no digit is lost */
+    DECIMAL,
+    TEXT,
+    BYTES;
+
+    private static final ColumnKind[] KINDS = values();
+
+    static ColumnKind of (int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> LONG;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> DOUBLE;
+            case Types.BOOLEAN, Types.BIT -> BOOLEAN;
+            case Types.DECIMAL, Types.NUMERIC -> DECIMAL;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> BYTES;
+            default -> TEXT;
+        };
+    }
+
+    static ColumnKind ofOrdinal (int ordinal) {
+        if (ordinal < 0 || ordinal >= KINDS.length) throw new IllegalArgumentException("Unknown column kind " + ordinal);
+        return KINDS[ordinal];
+    }
+}
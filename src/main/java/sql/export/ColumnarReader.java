@@ -0,0 +1,194 @@
+package sql.export;
+
+import common.ChannelInputStream;
+import common.FileUtil;
+import common.Utf8;
+import common.Varint;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a file written by {@link Export} in {@link Export.Format#COLUMNAR}, one row group at a time. Values come back as
+ * {@link Long}, {@link Double}, {@link Boolean}, {@link BigDecimal}, {@link String} or {@code byte[]}, {@code NULL} as
+ * {@code null}.
+ * <pre>{@code
+ * try (ColumnarReader reader = ColumnarReader.open("users.sqlc.gz")) {
+ *     while (reader.hasNext()) process(reader.next());
+ * }
+ * }</pre>
+ * **/
+public final class ColumnarReader implements Iterator<Object[]>, AutoCloseable {
+
+    private final DataInputStream in;
+    private final String[] names;
+    private final int[] sqlTypes;
+    private final ColumnKind[] kinds;
+
+    /**
+     * Values of the current group by column, then by row
+     * **/
+    private final Object[][] group;
+    private int groupRows;
+    private int row;
+    private long rowsRead;
+    private boolean finished;
+
+    private ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+
+    private ColumnarReader (DataInputStream in) throws IOException {
+        this.in = in;
+
+        byte[] magic = new byte[ColumnarWriter.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, ColumnarWriter.MAGIC)) throw new IOException("Not a columnar export file");
+
+        int version = in.readUnsignedByte();
+        if (version != ColumnarWriter.VERSION) throw new IOException("Unsupported columnar file version " + version);
+
+        int columns = (int) Varint.read(in);
+        this.names = new String[columns];
+        this.sqlTypes = new int[columns];
+        this.kinds = new ColumnKind[columns];
+        this.group = new Object[columns][];
+
+        for (int i = 0; i < columns; i++) {
+            int length = (int) Varint.read(in);
+            names[i] = Utf8.decode(read(length), length);
+            kinds[i] = ColumnKind.ofOrdinal(in.readUnsignedByte());
+            sqlTypes[i] = (int) Varint.unZigZag(Varint.read(in));
+        }
+    }
+
+    /**
+     * Opens the file, compressed files are detected from their first bytes
+     * **/
+    public static ColumnarReader open (String path) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        try {
+            return new ColumnarReader(new DataInputStream(FileUtil.decompress(new ChannelInputStream(channel, 64 * 1024))));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String[] getColumnNames () {
+        return names.clone();
+    }
+
+    /**
+     * Column types as {@link java.sql.Types} values, as the query returned them
+     * **/
+    public int[] getColumnTypes () {
+        return sqlTypes.clone();
+    }
+
+    @Override
+    public boolean hasNext () {
+        if (row < groupRows) return true;
+        if (finished) return false;
+
+        try {
+            return nextGroup();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object[] next () {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        Object[] values = new Object[group.length];
+        for (int i = 0; i < group.length; i++) values[i] = group[i][row];
+        row++;
+        return values;
+    }
+
+    @Override
+    public void close () throws IOException {
+        in.close();
+    }
+
+    private boolean nextGroup () throws IOException {
+        int rows = (int) Varint.read(in);
+        if (rows == 0) {
+            long total = Varint.read(in);
+            if (total != rowsRead) throw new IOException("File holds %d rows, read %d".formatted(total, rowsRead));
+            finished = true;
+            groupRows = row = 0;
+            return false;
+        }
+
+        for (int i = 0; i < group.length; i++) {
+            if (group[i] == null || group[i].length < rows) group[i] = new Object[rows];
+            decode(kinds[i], read((int) Varint.read(in)), group[i], rows);
+        }
+
+        rowsRead += rows;
+        groupRows = rows;
+        row = 0;
+        return true;
+    }
+
+    private static void decode (ColumnKind kind, ByteBuffer chunk, Object[] values, int rows) throws IOException {
+        byte[] nulls = null;
+        if (chunk.get() != 0) {
+            nulls = new byte[(rows + 7) >>> 3];
+            chunk.get(nulls);
+        }
+
+        byte encoding = chunk.get();
+        String[] dictionary = null;
+        if (encoding == ColumnarWriter.DICTIONARY) {
+            dictionary = new String[(int) Varint.read(chunk)];
+            for (int i = 0; i < dictionary.length; i++) dictionary[i] = string(chunk);
+        } else if (encoding != ColumnarWriter.PLAIN) {
+            throw new IOException("Unknown column encoding " + encoding);
+        }
+
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (nulls != null && (nulls[i >>> 3] & 1 << (i & 7)) != 0) {
+                values[i] = null;
+                continue;
+            }
+
+            values[i] = switch (kind) {
+                case LONG -> previous += Varint.unZigZag(Varint.read(chunk));
+                case BOOLEAN -> (previous += Varint.unZigZag(Varint.read(chunk))) != 0;
+                case DOUBLE -> chunk.getDouble();
+                case DECIMAL -> new BigDecimal(dictionary != null ? dictionary[(int) Varint.read(chunk)] : string(chunk));
+                case TEXT -> dictionary != null ? dictionary[(int) Varint.read(chunk)] : string(chunk);
+                case BYTES -> {
+                    byte[] bytes = new byte[(int) Varint.read(chunk)];
+                    chunk.get(bytes);
+                    yield bytes;
+                }
+            };
+        }
+    }
+
+    private static String string (ByteBuffer chunk) {
+        return Utf8.decode(chunk, (int) Varint.read(chunk));
+    }
+
+    /**
+     * Reads the next {@code length} bytes into the reused buffer
+     * **/
+    private ByteBuffer read (int length) throws IOException {
+        if (chunk.capacity() < length) chunk = ByteBuffer.allocate(Math.max(chunk.capacity() * 2, length));
+        in.readFully(chunk.array(), 0, length);
+        return chunk.clear().limit(length);
+    }
+}
@@ -0,0 +1,249 @@
+package sql.export;
+
+import common.Settings;
+import common.Utf8;
+import common.Varint;
+import sql.query.Cursor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary file storing rows in groups, column by column, so similar values sit next to each other and compress
+ * well. Read back with {@link ColumnarReader}.
+ * <pre>
+ * file   := "SQLC" version:u8 columns:varint (name:string kind:u8 sqlType:svarint)* group* 0:varint rows:varint
+ * group  := rows:varint (length:varint chunk)*     one chunk per column
+ * chunk  := hasNulls:u8 [bitmap] encoding:u8 value* values of the non null rows only, bitmap bit set = null
+ * LONG, BOOLEAN  delta from the previous value as zigzag varint
+ * DOUBLE         8 bytes
+ * TEXT, DECIMAL  PLAIN: string*, or DICTIONARY: size:varint string* index:varint*
+ * BYTES          length:varint bytes
+ * string := length:varint utf8
+ * </pre>
+ * @see Settings#EXPORT_ROW_GROUP_SIZE
+ * **/
+final class ColumnarWriter extends FormatWriter {
+
+    static final byte[] MAGIC = {'S', 'Q', 'L', 'C'};
+    static final byte VERSION = 1;
+
+    static final byte PLAIN = 0;
+    static final byte DICTIONARY = 1;
+
+    private static final int MAX_DICTIONARY = 65_536;
+
+    private final int groupSize;
+    private final Column[] columns;
+    private int rows;
+    private long totalRows;
+
+    /**
+     * Reused for every chunk, grows to the largest one
+     * **/
+    private ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    ColumnarWriter (ExportChannel out, String[] names, int[] sqlTypes) {
+        super(out, names, sqlTypes);
+
+        this.groupSize = Math.max(1, Settings.EXPORT_ROW_GROUP_SIZE);
+        this.columns = new Column[kinds.length];
+        for (int i = 0; i < kinds.length; i++) columns[i] = new Column(kinds[i], groupSize);
+    }
+
+    @Override
+    void begin () throws IOException {
+        out.put(MAGIC);
+        out.put(VERSION);
+        out.putVarint(names.length);
+
+        for (int i = 0; i < names.length; i++) {
+            string(names[i]);
+            chunk.flip();
+            out.put(chunk);
+            chunk.clear();
+
+            out.put((byte) kinds[i].ordinal());
+            Varint.writeSigned(out.ensure(Varint.MAX_SIZE), sqlTypes[i]);
+        }
+    }
+
+    @Override
+    void row (Cursor cursor) throws IOException, SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            Column column = columns[i];
+
+            switch (column.kind) {
+                case LONG, BOOLEAN -> {
+                    long value = cursor.getLong(i);
+                    if (cursor.wasNull()) column.nullAt(rows);
+                    else column.longs[column.count++] = value;
+                }
+                case DOUBLE -> {
+                    double value = cursor.getDouble(i);
+                    if (cursor.wasNull()) column.nullAt(rows);
+                    else column.doubles[column.count++] = value;
+                }
+                case DECIMAL, TEXT -> {
+                    String value = cursor.getString(i);
+                    if (value == null) column.nullAt(rows);
+                    else column.objects[column.count++] = value;
+                }
+                case BYTES -> {
+                    byte[] value = cursor.getBytes(i);
+                    if (value == null) column.nullAt(rows);
+                    else column.objects[column.count++] = value;
+                }
+            }
+        }
+
+        if (++rows == groupSize) group();
+    }
+
+    @Override
+    void end () throws IOException {
+        if (rows > 0) group();
+        out.putVarint(0);
+        out.putVarint(totalRows);
+    }
+
+    private void group () throws IOException {
+        out.putVarint(rows);
+
+        for (Column column : columns) {
+            encode(column);
+            out.putVarint(chunk.position());
+            chunk.flip();
+            out.put(chunk);
+            chunk.clear();
+            column.reset(rows);
+        }
+
+        totalRows += rows;
+        rows = 0;
+    }
+
+    private void encode (Column column) {
+        if (column.hasNulls) {
+            int bitmap = (rows + 7) >>> 3;
+            ensure(1 + bitmap);
+            chunk.put((byte) 1).put(column.nulls, 0, bitmap);
+        } else {
+            ensure(1);
+            chunk.put((byte) 0);
+        }
+
+        switch (column.kind) {
+            case LONG, BOOLEAN -> {
+                ensure(1 + column.count * Varint.MAX_SIZE);
+                chunk.put(PLAIN);
+                long previous = 0;
+                for (int i = 0; i < column.count; i++) {
+                    Varint.write(chunk, Varint.zigZag(column.longs[i] - previous));
+                    previous = column.longs[i];
+                }
+            }
+            case DOUBLE -> {
+                ensure(1 + column.count * Double.BYTES);
+                chunk.put(PLAIN);
+                for (int i = 0; i < column.count; i++) chunk.putDouble(column.doubles[i]);
+            }
+            case DECIMAL, TEXT -> {
+                if (dictionary(column)) return;
+                ensure(1);
+                chunk.put(PLAIN);
+                for (int i = 0; i < column.count; i++) string((String) column.objects[i]);
+            }
+            case BYTES -> {
+                ensure(1);
+                chunk.put(PLAIN);
+                for (int i = 0; i < column.count; i++) {
+                    byte[] value = (byte[]) column.objects[i];
+                    ensure(Varint.MAX_SIZE + value.length);
+                    Varint.write(chunk, value.length);
+                    chunk.put(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the values as indexes into a list of the distinct values, when there are few of them
+     * @return {@code false} without writing anything when the column has too many distinct values
+     * **/
+    private boolean dictionary (Column column) {
+        int limit = Math.min(MAX_DICTIONARY, Math.max(1, column.count / 4));
+        dictionary.clear();
+
+        for (int i = 0; i < column.count; i++) {
+            dictionary.putIfAbsent((String) column.objects[i], dictionary.size());
+            if (dictionary.size() > limit) return false;
+        }
+
+        String[] values = new String[dictionary.size()];
+        dictionary.forEach((value, index) -> values[index] = value);
+
+        ensure(1 + Varint.MAX_SIZE);
+        chunk.put(DICTIONARY);
+        Varint.write(chunk, values.length);
+        for (String value : values) string(value);
+
+        ensure(column.count * Varint.MAX_SIZE);
+        for (int i = 0; i < column.count; i++) Varint.write(chunk, dictionary.get((String) column.objects[i]));
+        return true;
+    }
+
+    private void string (String value) {
+        int length = Utf8.length(value);
+        ensure(Varint.MAX_SIZE + length);
+        Varint.write(chunk, length);
+        Utf8.encode(value, chunk);
+    }
+
+    private void ensure (int bytes) {
+        if (chunk.remaining() >= bytes) return;
+
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(chunk.capacity() * 2, chunk.position() + bytes));
+        chunk.flip();
+        chunk = larger.put(chunk);
+    }
+
+    /**
+     * Values of one column in the current group, {@code NULL}s only take a bit
+     * **/
+    private static final class Column {
+
+        final ColumnKind kind;
+        final long[] longs;
+        final double[] doubles;
+        final Object[] objects;
+        final byte[] nulls;
+        boolean hasNulls;
+        int count;
+
+        Column (ColumnKind kind, int groupSize) {
+            this.kind = kind;
+            this.longs = (kind == ColumnKind.LONG || kind == ColumnKind.BOOLEAN) ? new long[groupSize] : null;
+            this.doubles = (kind == ColumnKind.DOUBLE) ? new double[groupSize] : null;
+            this.objects = (longs == null && doubles == null) ? new Object[groupSize] : null;
+            this.nulls = new byte[(groupSize + 7) >>> 3];
+        }
+
+        void nullAt (int row) {
+            nulls[row >>> 3] |= (byte) (1 << (row & 7));
+            hasNulls = true;
+        }
+
+        void reset (int rows) {
+            if (hasNulls) Arrays.fill(nulls, 0, (rows + 7) >>> 3, (byte) 0);
+            if (objects != null) Arrays.fill(objects, 0, count, null);
+            hasNulls = false;
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package sql.export;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * How an export file is compressed, through commons-compress like the dumps {@link common.FileUtil#decompress} reads
+ * @see Export
+ * **/
+public enum Compression {
+
+    NONE(null, ""),
+    GZIP(CompressorStreamFactory.GZIP, ".gz"),
+    BZIP2(CompressorStreamFactory.BZIP2, ".bz2"),
+    XZ(CompressorStreamFactory.XZ, ".xz");
+
+    private final String format;
+    private final String extension;
+
+    Compression (String format, String extension) {
+        this.format = format;
+        this.extension = extension;
+    }
+
+    /**
+     * Detects the compression from the file name, {@link #NONE} when it has no known suffix
+     * **/
+    public static Compression of (String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        for (Compression compression : values()) {
+            if (compression != NONE && lower.endsWith(compression.extension)) return compression;
+        }
+        return NONE;
+    }
+
+    /**
+     * File suffix of the compression, empty for {@link #NONE}
+     * **/
+    public String getExtension () {
+        return extension;
+    }
+
+    OutputStream wrap (OutputStream out) throws IOException {
+        if (format == null) return out;
+
+        try {
+            return new CompressorStreamFactory().createCompressorOutputStream(format, out);
+        } catch (CompressorException e) {
+            throw new IOException("Cannot compress with " + format, e);
+        }
+    }
+}
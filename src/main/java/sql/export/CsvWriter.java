@@ -0,0 +1,92 @@
+package sql.export;
+
+import sql.query.Cursor;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * RFC 4180 CSV with a header row and {@code \n} line breaks. Values holding a comma, quote or line break are quoted.
+ * {@code NULL} is an unquoted {@code \N}, binary values are Base64. Files written here load back unchanged with
+ * {@link sql.query.Query#bulkLoad(String, String)}, which decodes the Base64 of binary columns again.
+ * **/
+final class CsvWriter extends FormatWriter {
+
+    private static final byte[] NULL = {'\\', 'N'};
+
+    CsvWriter (ExportChannel out, String[] names, int[] sqlTypes) {
+        super(out, names, sqlTypes);
+    }
+
+    @Override
+    void begin () throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) out.put((byte) ',');
+            text(names[i]);
+        }
+        out.put((byte) '\n');
+    }
+
+    @Override
+    void row (Cursor cursor) throws IOException, SQLException {
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) out.put((byte) ',');
+
+            switch (kinds[i]) {
+                case LONG, BOOLEAN -> {
+                    long value = cursor.getLong(i);
+                    if (cursor.wasNull()) out.put(NULL);
+                    else out.putLong(value);
+                }
+                case DOUBLE -> {
+                    double value = cursor.getDouble(i);
+                    if (cursor.wasNull()) out.put(NULL);
+                    else out.putAscii(Double.toString(value));
+                }
+                case BYTES -> {
+                    byte[] value = cursor.getBytes(i);
+                    if (value == null) out.put(NULL);
+                    else out.put(Base64.getEncoder().encode(value));
+                }
+                case DECIMAL, TEXT -> {
+                    String value = cursor.getString(i);
+                    if (value == null) out.put(NULL);
+                    else text(value);
+                }
+            }
+        }
+        out.put((byte) '\n');
+    }
+
+    @Override
+    void end () {
+    }
+
+    private void text (String value) throws IOException {
+        if (!needsQuotes(value)) {
+            out.putUtf8(value);
+            return;
+        }
+
+        out.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') out.put((byte) '"');
+            i = out.putChar(value, i);
+        }
+        out.put((byte) '"');
+    }
+
+    /**
+     * Also quotes a literal {@code \N}, so it is not read back as {@code NULL}
+     * **/
+    private static boolean needsQuotes (String value) {
+        if (value.equals("\\N")) return true;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+package sql.export;
+
+import common.Settings;
+import log.Log;
+import sql.query.Cursor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Streams the rows of a {@link Cursor} into a file as they are fetched, so the result is never held in memory.
+ * The format and compression come from the file name, {@code songs.csv}, {@code songs.jsonl.gz}, {@code songs.sqlc.xz}.
+ * <div style="margin:0px">
+ *     <p>{@code Export.to(Query.cursor("select * from songs"), "exports/songs.jsonl.gz")}</p>
+ * </div>
+ * @see sql.query.Query#export(String, String, Object...)
+ * @see ColumnarReader
+ * **/
+public final class Export {
+
+    private Export () {
+    }
+
+    public enum Format {
+
+        /** Header row, {@code NULL} as {@code \N}, loads back with {@link sql.query.Query#bulkLoad(String, String)} */
+        CSV(".csv"),
+        /** One JSON object per line */
+        JSON_LINES(".jsonl", ".ndjson"),
+        /** Binary row groups stored by column, read with {@link ColumnarReader} */
+        COLUMNAR(".sqlc");
+
+        private final String[] extensions;
+
+        Format (String... extensions) {
+            this.extensions = extensions;
+        }
+
+        /**
+         * Detects the format from the file name, ignoring a compression suffix
+         * @throws IllegalArgumentException when the name has no known extension
+         * **/
+        public static Format of (String path) {
+            String lower = path.toLowerCase(Locale.ROOT);
+            lower = lower.substring(0, lower.length() - Compression.of(lower).getExtension().length());
+
+            for (Format format : values()) {
+                for (String extension : format.extensions) {
+                    if (lower.endsWith(extension)) return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: " + path);
+        }
+
+        public String getExtension () {
+            return extensions[0];
+        }
+    }
+
+    /**
+     * What an export wrote, {@code bytes} before compression and {@code fileBytes} on disk
+     * **/
+    public record Report (String path, Format format, Compression compression, long rows, long bytes, long fileBytes,
+                          double seconds) {
+
+        public double getRowsPerSecond () {
+            return rows / Math.max(seconds, 1e-9);
+        }
+
+        public double getBytesPerSecond () {
+            return bytes / Math.max(seconds, 1e-9);
+        }
+
+        @Override
+        public String toString () {
+            return "%s: %d rows | %.1f MiB | %.1f MiB on disk | %.1f s | %.0f rows/s | %.1f MiB/s"
+                    .formatted(path, rows, bytes / 1048576.0, fileBytes / 1048576.0, seconds, getRowsPerSecond(),
+                            getBytesPerSecond() / 1048576.0);
+        }
+    }
+
+    /**
+     * Writes every row of the cursor to {@code path} and closes the cursor
+     * @see Format#of(String)
+     * @see Compression#of(String)
+     * **/
+    public static Report to (Cursor cursor, String path) throws IOException, SQLException {
+        try {
+            return to(cursor, path, Format.of(path), Compression.of(path));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Writes every row of the cursor to {@code path} in the given format and closes the cursor
+     * **/
+    public static Report to (Cursor cursor, String path, Format format, Compression compression)
+            throws IOException, SQLException {
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long rows = 0;
+        long bytes;
+
+        try (cursor; ExportChannel out = new ExportChannel(Path.of(path), compression, Settings.EXPORT_BUFFER_SIZE)) {
+            FormatWriter writer = switch (format) {
+                case CSV -> new CsvWriter(out, cursor.getColumnNames(), cursor.getColumnTypes());
+                case JSON_LINES -> new JsonLinesWriter(out, cursor.getColumnNames(), cursor.getColumnTypes());
+                case COLUMNAR -> new ColumnarWriter(out, cursor.getColumnNames(), cursor.getColumnTypes());
+            };
+
+            writer.begin();
+            while (cursor.advance()) {
+                writer.row(cursor);
+                rows++;
+
+                if ((rows & 1023) == 0 && System.nanoTime() - lastReport >= Settings.DUMP_PROGRESS_INTERVAL * 1_000_000) {
+                    lastReport = System.nanoTime();
+                    Log.info("%s: %d rows | %.1f MiB".formatted(path, rows, out.getPosition() / 1048576.0));
+                }
+            }
+            writer.end();
+            bytes = out.getPosition();
+        }
+
+        Report report = new Report(path, format, compression, rows, bytes, Files.size(Path.of(path)),
+                (System.nanoTime() - start) / 1e9);
+        Log.info(report.toString());
+        return report;
+    }
+}
@@ -0,0 +1,164 @@
+package sql.export;
+
+import common.Utf8;
+import common.Varint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write side of an export: values are encoded straight into one large buffer, which goes to the {@link FileChannel}
+ * when it is full. Uncompressed files use a direct buffer, so the channel writes it without another copy. Compressed
+ * files use a heap buffer handed to the compressor in one call.
+ * @see common.Settings#EXPORT_BUFFER_SIZE
+ * **/
+final class ExportChannel implements AutoCloseable {
+
+    private static final byte[] DIGITS = "0123456789".getBytes();
+
+    private final FileChannel channel;
+    private final OutputStream compressor;
+    private final ByteBuffer buffer;
+
+    /**
+     * Bytes written before the current buffer, uncompressed
+     * **/
+    private long flushed;
+
+    private final byte[] number = new byte[20];
+
+    ExportChannel (Path path, Compression compression, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        int size = Math.max(64 * 1024, bufferSize);
+        if (compression == Compression.NONE) {
+            this.compressor = null;
+            this.buffer = ByteBuffer.allocateDirect(size);
+        } else {
+            this.compressor = compression.wrap(Channels.newOutputStream(channel));
+            this.buffer = ByteBuffer.allocate(size);
+        }
+    }
+
+    /**
+     * Makes room for {@code bytes} more bytes, which must not be more than the buffer holds
+     * **/
+    ByteBuffer ensure (int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+        return buffer;
+    }
+
+    void put (byte b) throws IOException {
+        if (!buffer.hasRemaining()) flush();
+        buffer.put(b);
+    }
+
+    void put (byte[] bytes) throws IOException {
+        put(bytes, 0, bytes.length);
+    }
+
+    void put (byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) flush();
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Writes a buffer from its position to its limit
+     * **/
+    void put (ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) flush();
+            int count = Math.min(bytes.remaining(), buffer.remaining());
+            buffer.put(buffer.position(), bytes, bytes.position(), count);
+            buffer.position(buffer.position() + count);
+            bytes.position(bytes.position() + count);
+        }
+    }
+
+    /**
+     * Writes a {@code String} that only holds ASCII characters, like numbers and keywords
+     * **/
+    void putAscii (String text) throws IOException {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) buffer.put((byte) text.charAt(i));
+    }
+
+    /**
+     * Writes a decimal number without a {@code String} in between
+     * **/
+    void putLong (long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putAscii(Long.toString(value));
+            return;
+        }
+
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+
+        int i = number.length;
+        do {
+            number[--i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        } while (value != 0);
+        buffer.put(number, i, number.length - i);
+    }
+
+    void putVarint (long value) throws IOException {
+        Varint.write(ensure(Varint.MAX_SIZE), value);
+    }
+
+    /**
+     * Encodes one UTF-8 character, surrogate pairs take both chars
+     * @return index of the last char used
+     * **/
+    int putChar (CharSequence text, int index) throws IOException {
+        return Utf8.encode(text, index, ensure(4));
+    }
+
+    void putUtf8 (CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++) i = putChar(text, i);
+    }
+
+    /**
+     * Uncompressed bytes written so far
+     * **/
+    long getPosition () {
+        return flushed + buffer.position();
+    }
+
+    void flush () throws IOException {
+        buffer.flip();
+        flushed += buffer.remaining();
+
+        if (compressor != null) {
+            compressor.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+        } else {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close () throws IOException {
+        try {
+            flush();
+            if (compressor != null) compressor.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package sql.export;
+
+import sql.query.Cursor;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Writes the rows of a {@link Cursor} in one file format. Reads every value with the typed getters of the cursor, so
+ * numbers never become a {@code String}.
+ * @see Export.Format
+ * **/
+abstract sealed class FormatWriter permits CsvWriter, JsonLinesWriter, ColumnarWriter {
+
+    protected final ExportChannel out;
+    protected final String[] names;
+    protected final int[] sqlTypes;
+    protected final ColumnKind[] kinds;
+
+    FormatWriter (ExportChannel out, String[] names, int[] sqlTypes) {
+        this.out = out;
+        this.names = names;
+        this.sqlTypes = sqlTypes;
+        this.kinds = new ColumnKind[sqlTypes.length];
+        for (int i = 0; i < sqlTypes.length; i++) kinds[i] = ColumnKind.of(sqlTypes[i]);
+    }
+
+    /**
+     * Writes what comes before the first row
+     * **/
+    abstract void begin () throws IOException;
+
+    /**
+     * Writes the row the cursor is on
+     * **/
+    abstract void row (Cursor cursor) throws IOException, SQLException;
+
+    /**
+     * Writes what comes after the last row
+     * **/
+    abstract void end () throws IOException;
+}
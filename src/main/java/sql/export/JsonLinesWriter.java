@@ -0,0 +1,136 @@
+package sql.export;
+
+import common.Utf8;
+import sql.query.Cursor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * One JSON object per line, keyed by column name. Integers, decimals and finite doubles are JSON numbers, booleans are
+ * {@code true} or {@code false}, binary values are Base64 strings, {@code NaN} and infinities are strings.
+ * The keys are encoded once, not for every row.
+ * **/
+final class JsonLinesWriter extends FormatWriter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    /**
+     * {@code {"name":} for the first column, {@code ,"name":} for the others
+     * **/
+    private final byte[][] keys;
+
+    JsonLinesWriter (ExportChannel out, String[] names, int[] sqlTypes) {
+        super(out, names, sqlTypes);
+
+        keys = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            String key = (i == 0 ? "{" : ",") + quote(names[i]) + ":";
+            ByteBuffer encoded = ByteBuffer.allocate(Utf8.length(key));
+            Utf8.encode(key, encoded);
+            keys[i] = encoded.array();
+        }
+    }
+
+    @Override
+    void begin () {
+    }
+
+    @Override
+    void row (Cursor cursor) throws IOException, SQLException {
+        if (keys.length == 0) out.put((byte) '{');
+
+        for (int i = 0; i < kinds.length; i++) {
+            out.put(keys[i]);
+
+            switch (kinds[i]) {
+                case LONG -> {
+                    long value = cursor.getLong(i);
+                    if (cursor.wasNull()) out.put(NULL);
+                    else out.putLong(value);
+                }
+                case BOOLEAN -> {
+                    long value = cursor.getLong(i);
+                    if (cursor.wasNull()) out.put(NULL);
+                    else out.put(value != 0 ? TRUE : FALSE);
+                }
+                case DOUBLE -> {
+                    double value = cursor.getDouble(i);
+                    if (cursor.wasNull()) out.put(NULL);
+                    else if (Double.isFinite(value)) out.putAscii(Double.toString(value));
+                    else text(Double.toString(value));
+                }
+                case DECIMAL -> {
+                    String value = cursor.getString(i);
+                    if (value == null) out.put(NULL);
+                    else out.putAscii(value);
+                }
+                case BYTES -> {
+                    byte[] value = cursor.getBytes(i);
+                    if (value == null) {
+                        out.put(NULL);
+                    } else {
+                        out.put((byte) '"');
+                        out.put(Base64.getEncoder().encode(value));
+                        out.put((byte) '"');
+                    }
+                }
+                case TEXT -> {
+                    String value = cursor.getString(i);
+                    if (value == null) out.put(NULL);
+                    else text(value);
+                }
+            }
+        }
+        out.put((byte) '}');
+        out.put((byte) '\n');
+    }
+
+    @Override
+    void end () {
+    }
+
+    private void text (String value) throws IOException {
+        out.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"' -> out.putAscii("\\\"");
+                case '\\' -> out.putAscii("\\\\");
+                case '\n' -> out.putAscii("\\n");
+                case '\r' -> out.putAscii("\\r");
+                case '\t' -> out.putAscii("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        ByteBuffer escape = out.ensure(6);
+                        escape.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                                .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+                    } else {
+                        i = out.putChar(value, i);
+                    }
+                }
+            }
+        }
+        out.put((byte) '"');
+    }
+
+    /**
+     * Quotes a key once at the start, rows use {@link #text(String)}
+     * **/
+    private static String quote (String name) {
+        StringBuilder builder = new StringBuilder(name.length() + 2).append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') builder.append('\\').append(c);
+            else if (c < 0x20) builder.append("\\u%04x".formatted((int) c));
+            else builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,216 @@
+package sql.query;
+
+import log.Log;
+import sql.PooledConnection;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static common.Settings.logQueries;
+import static common.Settings.slowQueryLog;
+
+/**
+ * Collects non-{@code SELECT} statements and sends them to the server with {@code addBatch}/{@code executeBatch}
+ * instead of one round trip per statement. Consecutive statements with the same SQL (for example the same parameterized
+ * {@code INSERT}) are sent as a single prepared batch, anything else as a plain {@link Statement} batch.
+ * Every {@code executeBatch} call produces a {@link Report}, so a failure can be traced back to its statement.
+ * @see Query#batch(String, List)
+ * @see common.Settings#batchScripts
+ * @see common.Settings#BATCH_SIZE
+ * **/
+public class Batch {
+
+    /**
+     * Update counts of one {@code executeBatch} call, {@code updateCounts[i]} belongs to {@code statements.get(i)}
+     * **/
+    public record Report(int number, List<String> statements, int[] updateCounts) {
+
+        /**
+         * Sum of all known update counts, statements that report {@link Statement#SUCCESS_NO_INFO} are not counted
+         * **/
+        public long getAffectedRows () {
+            return Arrays.stream(updateCounts).filter(count -> count > 0).asLongStream().sum();
+        }
+    }
+
+    private record Entry(String sql, Object[] parameters) {}
+
+    private final PooledConnection pooled;
+    private final int size;
+
+    private final List<Entry> pending = new ArrayList<>();
+    private final List<Report> reports = new ArrayList<>();
+
+    /**
+     * @param size amount of statements collected before they are sent to the server
+     * **/
+    public Batch (PooledConnection pooled, int size) {
+        this.pooled = pooled;
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Queues a plain statement, sends the batch when it is full
+     * **/
+    public void add (String sql) throws SQLException {
+        queue(new Entry(sql, null));
+    }
+
+    /**
+     * Queues a statement with {@code ?} placeholders and its parameters, sends the batch when it is full
+     * @see Parameters#bind(PreparedStatement, Object...)
+     * **/
+    public void add (String sql, Object... parameters) throws SQLException {
+        queue(new Entry(sql, parameters == null ? new Object[0] : parameters));
+    }
+
+    /**
+     * Sends every queued statement to the server. Must be called once more after the last {@link #add(String)}.
+     * @throws BatchUpdateException when a statement failed, the failing statement is logged as error
+     * **/
+    public void flush () throws SQLException {
+        int start = 0;
+
+        try {
+            while (start < pending.size()) {
+                int end = runEnd(start);
+                Entry first = pending.get(start);
+
+                if (end - start > 1 || first.parameters() != null) {
+                    executePrepared(start, end);
+                } else {
+                    end = plainEnd(start);
+                    executePlain(start, end);
+                }
+
+                start = end;
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Reports of every {@code executeBatch} call so far, in order
+     * **/
+    public List<Report> getReports () {
+        return Collections.unmodifiableList(reports);
+    }
+
+    private void queue (Entry entry) throws SQLException {
+        pending.add(entry);
+        if (pending.size() >= size) flush();
+    }
+
+    /**
+     * End of the run of entries with the same SQL starting at {@code start}
+     * **/
+    private int runEnd (int start) {
+        String sql = pending.get(start).sql();
+        int end = start + 1;
+        while (end < pending.size() && pending.get(end).sql().equals(sql)) end++;
+        return end;
+    }
+
+    /**
+     * End of the plain statements starting at {@code start}, stops before a parameterized entry or a run of identical SQL
+     * **/
+    private int plainEnd (int start) {
+        int end = start + 1;
+        while (end < pending.size() && pending.get(end).parameters() == null && runEnd(end) - end == 1) end++;
+        return end;
+    }
+
+    private void executePrepared (int start, int end) throws SQLException {
+        String sql = pending.get(start).sql();
+        QueryMetrics.Timer timer = QueryMetrics.start(sql);
+        PreparedStatement statement = pooled.prepareStatement(sql);
+
+        try {
+            for (int i = start; i < end; i++) {
+                Parameters.bind(statement, pending.get(i).parameters());
+                statement.addBatch();
+            }
+            timer.prepared();
+
+            Report report = report(start, end, statement.executeBatch());
+            timer.updated(report.getAffectedRows());
+        } catch (SQLException | RuntimeException e) {
+            pooled.discardStatement(statement);
+            timer.fail();
+            attribute(e, start, end);
+            throw e;
+        } finally {
+            ResultCache.invalidate(sql);
+        }
+
+        pooled.releaseStatement(sql, statement);
+        timer.finish();
+    }
+
+    /**
+     * Sends different statements in one {@link Statement} batch. They are timed together under their joined SQL, so a
+     * slow batch shows up in the slow query log with every statement it ran.
+     * **/
+    private void executePlain (int start, int end) throws SQLException {
+        QueryMetrics.Timer timer = QueryMetrics.start(String.join(";\n",
+                pending.subList(start, end).stream().map(Entry::sql).toList()));
+
+        try (Statement statement = pooled.getConnection().createStatement()) {
+            for (int i = start; i < end; i++) {
+                statement.addBatch(pending.get(i).sql());
+            }
+            timer.prepared();
+
+            Report report = report(start, end, statement.executeBatch());
+            timer.updated(report.getAffectedRows());
+        } catch (SQLException | RuntimeException e) {
+            timer.fail();
+            attribute(e, start, end);
+            throw e;
+        } finally {
+            for (int i = start; i < end; i++) ResultCache.invalidate(pending.get(i).sql());
+        }
+
+        timer.finish();
+    }
+
+    private Report report (int start, int end, int[] updateCounts) {
+        List<String> statements = pending.subList(start, end).stream().map(Entry::sql).toList();
+        Report report = new Report(reports.size() + 1, statements, updateCounts);
+        reports.add(report);
+
+        if (logQueries && !slowQueryLog) Log.exec("Batch %d: %d statements, %d rows affected"
+                .formatted(report.number(), statements.size(), report.getAffectedRows()));
+        return report;
+    }
+
+    /**
+     * Logs which statement of the batch failed. Drivers either stop at the first failure, so the failing statement is
+     * the first one without an update count, or keep going and mark it with {@link Statement#EXECUTE_FAILED}.
+     * **/
+    private void attribute (Exception e, int start, int end) {
+        int failed = 0;
+
+        if (e instanceof BatchUpdateException batchException && batchException.getUpdateCounts() != null) {
+            int[] counts = batchException.getUpdateCounts();
+            failed = counts.length;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    failed = i;
+                    break;
+                }
+            }
+        }
+
+        failed = Math.min(start + failed, end - 1);
+        Log.error("Batch %d failed at statement %d: %s".formatted(reports.size() + 1, failed - start + 1,
+                pending.get(failed).sql()));
+    }
+}
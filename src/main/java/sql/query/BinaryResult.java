@@ -0,0 +1,471 @@
+package sql.query;
+
+import common.Utf8;
+import common.Varint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Types;
+import java.util.ArrayList;
+
+/**
+ * Result of a {@code SELECT} in a compact binary layout that can be kept, written to disk and mapped back without
+ * parsing. Values are read straight from the {@link ByteBuffer} when they are asked for, opening a result only reads
+ * the column names.
+ * <pre>
+ * result := "SQLR" version:u8 columns:varint (name:string type:u8 sqlType:svarint)* row* offset:i32[rows] rows:i32
+ * row    := nulls[ceil(columns / 8)] value*    values of the non null columns only, bit set = null
+ * LONG   zigzag varint
+ * DOUBLE 8 bytes
+ * TEXT   string := length:varint utf8
+ * </pre>
+ * The offsets at the end give every row in O(1). Build one with {@link #encode(ArrayList)} or
+ * {@link #encode(ColumnarResult)}, turn it back with {@link #toList()}.
+ * @see Result#extractColumn(BinaryResult, int)
+ * **/
+public final class BinaryResult {
+
+    private static final byte[] MAGIC = {'S', 'Q', 'L', 'R'};
+    private static final byte VERSION = 1;
+
+    public enum Type {
+        LONG,
+        DOUBLE,
+        TEXT
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final ByteBuffer buffer;
+    private final String[] names;
+    private final Type[] types;
+    private final int[] sqlTypes;
+    private final int rowCount;
+    private final int offsets;
+    private final int bitmapSize;
+
+    private BinaryResult (ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        try {
+            int limit = buffer.limit();
+            if (limit < MAGIC.length + 6 || buffer.get(0) != MAGIC[0] || buffer.get(1) != MAGIC[1]
+                    || buffer.get(2) != MAGIC[2] || buffer.get(3) != MAGIC[3]) {
+                throw new IllegalArgumentException("Not a binary result");
+            }
+            if (buffer.get(4) != VERSION) throw new IllegalArgumentException("Unsupported binary result version " + buffer.get(4));
+
+            int at = 5;
+            long columns = Varint.read(buffer, at);
+            at += Varint.size(columns);
+
+            names = new String[(int) columns];
+            types = new Type[names.length];
+            sqlTypes = new int[names.length];
+
+            for (int i = 0; i < names.length; i++) {
+                int length = (int) Varint.read(buffer, at);
+                at += Varint.size(length);
+                names[i] = Utf8.decode(buffer, at, length);
+                at += length;
+
+                int type = buffer.get(at++);
+                if (type < 0 || type >= TYPES.length) throw new IllegalArgumentException("Unknown column type " + type);
+                types[i] = TYPES[type];
+
+                long sqlType = Varint.read(buffer, at);
+                at += Varint.size(sqlType);
+                sqlTypes[i] = (int) Varint.unZigZag(sqlType);
+            }
+
+            rowCount = buffer.getInt(limit - Integer.BYTES);
+            long start = limit - Integer.BYTES - (long) rowCount * Integer.BYTES;
+            if (rowCount < 0 || start < at) throw new IllegalArgumentException("Binary result is truncated");
+            offsets = (int) start;
+
+            bitmapSize = (names.length + 7) >>> 3;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Binary result is truncated", e);
+        }
+    }
+
+    /**
+     * Reads a result from the buffer's position to its limit without copying it. The buffer must not change afterwards.
+     * @throws IllegalArgumentException when the bytes are not a binary result
+     * **/
+    public static BinaryResult wrap (ByteBuffer buffer) {
+        return new BinaryResult(buffer.slice());
+    }
+
+    /**
+     * Maps a file written by {@link #save(Path)} into memory, the values are only read from disk when used
+     * **/
+    public static BinaryResult map (Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new BinaryResult(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Encodes a result in the {@code ArrayList<String[]>} layout of {@link Query#fromString(String)}: the column names,
+     * the empty separator row, then the rows. A column becomes {@link Type#LONG} or {@link Type#DOUBLE} when every value
+     * in it turns back into the same text, otherwise it stays {@link Type#TEXT}, so {@link #toList()} gives back the
+     * exact same strings.
+     * **/
+    public static BinaryResult encode (ArrayList<String[]> result) {
+        String[] names = result.isEmpty() ? new String[0] : result.getFirst();
+        int rows = Math.max(0, result.size() - 2);
+
+        Type[] types = new Type[names.length];
+        int[] sqlTypes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            types[i] = detect(result, i);
+            sqlTypes[i] = switch (types[i]) {
+                case LONG -> Types.BIGINT;
+                case DOUBLE -> Types.DOUBLE;
+                case TEXT -> Types.VARCHAR;
+            };
+        }
+
+        Encoder encoder = new Encoder(names, types, sqlTypes, rows);
+        for (int row = 0; row < rows; row++) {
+            String[] values = result.get(row + 2);
+            encoder.startRow();
+
+            for (int i = 0; i < names.length; i++) {
+                String value = values[i];
+                if (value == null) {
+                    encoder.nullAt(i);
+                    continue;
+                }
+
+                switch (types[i]) {
+                    case LONG -> encoder.putLong(Long.parseLong(value));
+                    case DOUBLE -> encoder.putDouble(Double.parseDouble(value));
+                    case TEXT -> encoder.putString(value);
+                }
+            }
+        }
+        return encoder.finish();
+    }
+
+    /**
+     * Encodes a typed result, integer columns as {@link Type#LONG}, floating point columns as {@link Type#DOUBLE}
+     * **/
+    public static BinaryResult encode (ColumnarResult result) {
+        int columnCount = result.getColumnCount();
+        String[] names = result.getColumnNames();
+        Type[] types = new Type[columnCount];
+        int[] sqlTypes = new int[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            ColumnarResult.Column column = result.getColumn(i);
+            sqlTypes[i] = column.getSqlType();
+            types[i] = switch (column) {
+                case ColumnarResult.IntColumn ignored -> Type.LONG;
+                case ColumnarResult.LongColumn ignored -> Type.LONG;
+                case ColumnarResult.DoubleColumn ignored -> Type.DOUBLE;
+                case ColumnarResult.StringColumn ignored -> Type.TEXT;
+            };
+        }
+
+        Encoder encoder = new Encoder(names, types, sqlTypes, result.getRowCount());
+        for (int row = 0; row < result.getRowCount(); row++) {
+            encoder.startRow();
+
+            for (int i = 0; i < columnCount; i++) {
+                ColumnarResult.Column column = result.getColumn(i);
+                if (column.isNull(row)) {
+                    encoder.nullAt(i);
+                    continue;
+                }
+
+                switch (column) {
+                    case ColumnarResult.IntColumn ints -> encoder.putLong(ints.getInt(row));
+                    case ColumnarResult.LongColumn longs -> encoder.putLong(longs.getLong(row));
+                    case ColumnarResult.DoubleColumn doubles -> encoder.putDouble(doubles.getDouble(row));
+                    case ColumnarResult.StringColumn strings -> encoder.putString(strings.getString(row));
+                }
+            }
+        }
+        return encoder.finish();
+    }
+
+    /**
+     * Writes the result to a file, read it back with {@link #map(Path)}
+     * **/
+    public void save (Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = buffer.duplicate().rewind();
+            while (bytes.hasRemaining()) channel.write(bytes);
+        }
+    }
+
+    /**
+     * The encoded bytes, read only
+     * **/
+    public ByteBuffer asBuffer () {
+        return buffer.asReadOnlyBuffer().rewind();
+    }
+
+    public int size () {
+        return buffer.limit();
+    }
+
+    public int getRowCount () {
+        return rowCount;
+    }
+
+    public int getColumnCount () {
+        return names.length;
+    }
+
+    public String[] getColumnNames () {
+        return names.clone();
+    }
+
+    public Type getType (int column) {
+        return types[column];
+    }
+
+    /**
+     * Type of the column as a {@link Types} value
+     * **/
+    public int getSqlType (int column) {
+        return sqlTypes[column];
+    }
+
+    public boolean isNull (int row, int column) {
+        return (buffer.get(rowStart(row) + (column >>> 3)) & 1 << (column & 7)) != 0;
+    }
+
+    /**
+     * The value as {@code String}, or {@code null} for {@code NULL}
+     * **/
+    public String getString (int row, int column) {
+        int at = find(row, column);
+        if (at < 0) return null;
+
+        return switch (types[column]) {
+            case LONG -> Long.toString(Varint.unZigZag(Varint.read(buffer, at)));
+            case DOUBLE -> Double.toString(buffer.getDouble(at));
+            case TEXT -> {
+                int length = (int) Varint.read(buffer, at);
+                yield Utf8.decode(buffer, at + Varint.size(length), length);
+            }
+        };
+    }
+
+    /**
+     * The value as {@code long}, {@code 0} for {@code NULL}. Text is parsed.
+     * **/
+    public long getLong (int row, int column) {
+        int at = find(row, column);
+        if (at < 0) return 0;
+
+        return switch (types[column]) {
+            case LONG -> Varint.unZigZag(Varint.read(buffer, at));
+            case DOUBLE -> (long) buffer.getDouble(at);
+            case TEXT -> Long.parseLong(getString(row, column));
+        };
+    }
+
+    /**
+     * The value as {@code double}, {@code 0} for {@code NULL}. Text is parsed.
+     * **/
+    public double getDouble (int row, int column) {
+        int at = find(row, column);
+        if (at < 0) return 0;
+
+        return switch (types[column]) {
+            case LONG -> Varint.unZigZag(Varint.read(buffer, at));
+            case DOUBLE -> buffer.getDouble(at);
+            case TEXT -> Double.parseDouble(getString(row, column));
+        };
+    }
+
+    public String[] getRow (int row) {
+        String[] values = new String[names.length];
+        for (int i = 0; i < names.length; i++) values[i] = getString(row, i);
+        return values;
+    }
+
+    /**
+     * Converts back to the {@code ArrayList<String[]>} layout of {@link Query#fromString(String)}, with the column names
+     * and the empty separator row first
+     * **/
+    public ArrayList<String[]> toList () {
+        ArrayList<String[]> result = new ArrayList<>(rowCount + 2);
+        result.add(getColumnNames());
+        result.add(new String[]{"", "", ""});
+
+        for (int row = 0; row < rowCount; row++) result.add(getRow(row));
+        return result;
+    }
+
+    private int rowStart (int row) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("Row %d of %d".formatted(row, rowCount));
+        return buffer.getInt(offsets + row * Integer.BYTES);
+    }
+
+    /**
+     * Position of the value, -1 when it is {@code NULL}. Skips the earlier values of the row.
+     * **/
+    private int find (int row, int column) {
+        int start = rowStart(row);
+        if ((buffer.get(start + (column >>> 3)) & 1 << (column & 7)) != 0) return -1;
+
+        int at = start + bitmapSize;
+        for (int i = 0; i < column; i++) {
+            if ((buffer.get(start + (i >>> 3)) & 1 << (i & 7)) != 0) continue;
+
+            at += switch (types[i]) {
+                case LONG -> Varint.size(Varint.read(buffer, at));
+                case DOUBLE -> Double.BYTES;
+                case TEXT -> {
+                    int length = (int) Varint.read(buffer, at);
+                    yield Varint.size(length) + length;
+                }
+            };
+        }
+        return at;
+    }
+
+    /**
+     * Picks the narrowest type every value of the column round trips through
+     * **/
+    private static Type detect (ArrayList<String[]> result, int column) {
+        boolean longs = true;
+        boolean doubles = true;
+        boolean seen = false;
+
+        for (int row = 2; row < result.size() && (longs || doubles); row++) {
+            String value = result.get(row)[column];
+            if (value == null) continue;
+
+            if (longs) {
+                longs = isLong(value);
+                // Double.toString never prints an integer, so earlier integers would not round trip as DOUBLE
+                if (!longs && seen) doubles = false;
+            }
+            if (doubles && !longs) doubles = isDouble(value);
+            seen = true;
+        }
+
+        if (!seen) return Type.TEXT;
+        if (longs) return Type.LONG;
+        return doubles ? Type.DOUBLE : Type.TEXT;
+    }
+
+    private static boolean isLong (String value) {
+        int length = value.length();
+        if (length == 0 || length > 20) return false;
+
+        int i = value.charAt(0) == '-' ? 1 : 0;
+        if (i == length || (value.charAt(i) == '0' && length > i + 1) || (i == 1 && value.charAt(1) == '0')) return false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDouble (String value) {
+        if (value.isEmpty() || value.length() > 32) return false;
+        char first = value.charAt(0);
+        if (first != '-' && first != 'N' && first != 'I' && (first < '0' || first > '9')) return false;
+
+        try {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes rows into a growing heap buffer and the row offsets next to it
+     * **/
+    private static final class Encoder {
+
+        private final int columns;
+        private final int bitmapSize;
+        private ByteBuffer out;
+        private final int[] offsets;
+        private int rows;
+        private int rowStart;
+
+        Encoder (String[] names, Type[] types, int[] sqlTypes, int rowCount) {
+            this.columns = names.length;
+            this.bitmapSize = (columns + 7) >>> 3;
+            this.offsets = new int[rowCount];
+            this.out = ByteBuffer.allocate(Math.clamp((long) rowCount * (bitmapSize + columns * 4L), 64, 1 << 20));
+
+            ensure(MAGIC.length + 1 + Varint.MAX_SIZE);
+            out.put(MAGIC).put(VERSION);
+            Varint.write(out, columns);
+
+            for (int i = 0; i < columns; i++) {
+                putString(names[i]);
+                ensure(1 + Varint.MAX_SIZE);
+                out.put((byte) types[i].ordinal());
+                Varint.writeSigned(out, sqlTypes[i]);
+            }
+        }
+
+        void startRow () {
+            ensure(bitmapSize);
+            rowStart = out.position();
+            offsets[rows++] = rowStart;
+            for (int i = 0; i < bitmapSize; i++) out.put((byte) 0);
+        }
+
+        void nullAt (int column) {
+            int at = rowStart + (column >>> 3);
+            out.put(at, (byte) (out.get(at) | 1 << (column & 7)));
+        }
+
+        void putLong (long value) {
+            ensure(Varint.MAX_SIZE);
+            Varint.writeSigned(out, value);
+        }
+
+        void putDouble (double value) {
+            ensure(Double.BYTES);
+            out.putDouble(value);
+        }
+
+        void putString (String value) {
+            int length = Utf8.length(value);
+            ensure(Varint.MAX_SIZE + length);
+            Varint.write(out, length);
+            Utf8.encode(value, out);
+        }
+
+        BinaryResult finish () {
+            ensure((rows + 1) * Integer.BYTES);
+            for (int i = 0; i < rows; i++) out.putInt(offsets[i]);
+            out.putInt(rows);
+            return new BinaryResult(out.flip());
+        }
+
+        private void ensure (int bytes) {
+            if (out.remaining() >= bytes) return;
+
+            long size = Math.max(out.capacity() * 2L, (long) out.position() + bytes);
+            if (size > Integer.MAX_VALUE - 8) throw new IllegalStateException("Result is too large to encode");
+            ByteBuffer larger = ByteBuffer.allocate((int) size);
+            out.flip();
+            out = larger.put(out);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package sql.query;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.mysql.cj.jdbc.JdbcStatement;
+import common.ChannelInputStream;
+import common.FileUtil;
+import org.jetbrains.annotations.Nullable;
+import sql.Dialect;
+import sql.PooledConnection;
+import sql.SqlConnection;
+import sql.Transaction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+import static common.Settings.BATCH_SIZE;
+import static common.Settings.BULK_COMMIT_ROWS;
+import static common.Settings.BULK_ROWS_PER_STATEMENT;
+import static common.Settings.DUMP_CHUNK_SIZE;
+import static common.Settings.bulkHeader;
+import static common.Settings.bulkLocalInfile;
+
+/**
+ * Loads a CSV or TSV file into a table. Files ending in {@code .tsv} or {@code .tab}, before any compression suffix,
+ * are tab separated and unquoted, everything else is comma separated with {@code "} quotes. Compressed files are
+ * decompressed on the fly.
+ * <p>
+ * Values are converted to the column types the driver reports in {@link DatabaseMetaData#getColumns}, binary columns
+ * are decoded from Base64. An unquoted {@code \N} is {@code NULL}, and so is an empty unquoted value in a column that is
+ * neither text nor binary.
+ * <p>
+ * Rows are sent as multi-row {@code INSERT}s of {@link common.Settings#BULK_ROWS_PER_STATEMENT} rows, batched up to
+ * {@link common.Settings#BATCH_SIZE} rows per round trip, and committed every {@link common.Settings#BULK_COMMIT_ROWS}
+ * rows. A failed load keeps the chunks committed before the failure. Inside a {@link Transaction} the load joins it and
+ * never commits. On MySQL the server reads the file itself with {@code LOAD DATA LOCAL INFILE} when
+ * {@link common.Settings#bulkLocalInfile} is on and the url allows it.
+ * @see Query#bulkLoad(String, String, Consumer)
+ * @see CsvReader
+ * **/
+final class BulkLoader {
+
+    private record Column(String name, int type, Parameters.Null none) {
+
+        boolean isText () {
+            return switch (type) {
+                case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR,
+                     Types.CLOB, Types.NCLOB -> true;
+                default -> false;
+            };
+        }
+
+        /**
+         * Binary values are Base64 in the file, like {@link sql.export.Export} writes them
+         * **/
+        boolean isBinary () {
+            return switch (type) {
+                case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> true;
+                default -> false;
+            };
+        }
+    }
+
+    private BulkLoader () {
+    }
+
+    static LoadProgress load (String path, String table, @Nullable Consumer<LoadProgress> listener) throws IOException, SQLException {
+        Path file = Path.of(path);
+        byte delimiter = delimiter(file);
+
+        boolean owned = Transaction.current() == null;
+
+        try (Transaction transaction = owned ? Transaction.begin() : null;
+             PooledConnection pooled = SqlConnection.borrow();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             ChannelInputStream raw = new ChannelInputStream(channel, DUMP_CHUNK_SIZE);
+             CsvReader reader = new CsvReader(FileUtil.decompress(raw), delimiter, delimiter == ',', DUMP_CHUNK_SIZE)) {
+
+            List<Column> columns = columns(pooled, table);
+            if (bulkHeader) columns = header(reader, columns, path, table);
+
+            LoadProgress progress = new LoadProgress(path, table, channel.size(), raw::getPosition, listener);
+
+            if (!columns.isEmpty()) {
+                if (useLocalInfile(pooled, file)) {
+                    long rows = localInfile(pooled, file, table, columns, delimiter, reader);
+                    progress.localInfile();
+                    progress.add(rows);
+                } else {
+                    insert(pooled, transaction, table, columns, reader, progress, path);
+                }
+            }
+
+            if (transaction != null) transaction.commit();
+
+            progress.finish();
+            return progress;
+
+        } finally {
+            ResultCache.invalidate("insert into " + table);
+        }
+    }
+
+    /**
+     * Sends the rows as multi-row prepared {@code INSERT}s, the last statement holds the rows left over
+     * **/
+    private static void insert (PooledConnection pooled, @Nullable Transaction transaction, String table,
+                                List<Column> columns, CsvReader reader, LoadProgress progress, String path) throws IOException, SQLException {
+
+        Dialect dialect = pooled.getDialect();
+        int width = columns.size();
+        int rowsPerStatement = Math.max(1, Math.min(BULK_ROWS_PER_STATEMENT, dialect.getMaxParameters() / width));
+        int statementsPerBatch = Math.max(1, BATCH_SIZE / rowsPerStatement);
+
+        Object[] values = new Object[rowsPerStatement * width];
+        int buffered = 0;
+        int batched = 0;
+        long sent = 0;
+        long uncommitted = 0;
+
+        String sql = insertSql(dialect, table, columns, rowsPerStatement);
+        PreparedStatement statement = pooled.prepareStatement(sql);
+
+        try {
+            while (reader.next()) {
+                convert(reader, columns, values, buffered * width, path);
+                if (++buffered < rowsPerStatement) continue;
+
+                bind(statement, values, values.length);
+                statement.addBatch();
+                buffered = 0;
+
+                if (++batched == statementsPerBatch) {
+                    long rows = (long) batched * rowsPerStatement;
+                    execute(statement, sent, rows, path);
+                    progress.add(rows);
+                    sent += rows;
+                    uncommitted += rows;
+                    batched = 0;
+
+                    if (transaction != null && BULK_COMMIT_ROWS > 0 && uncommitted >= BULK_COMMIT_ROWS) {
+                        transaction.checkpoint();
+                        uncommitted = 0;
+                    }
+                }
+            }
+
+            if (batched > 0) {
+                long rows = (long) batched * rowsPerStatement;
+                execute(statement, sent, rows, path);
+                progress.add(rows);
+                sent += rows;
+            }
+
+        } catch (SQLException | IOException | RuntimeException e) {
+            pooled.discardStatement(statement);
+            throw e;
+        }
+        pooled.releaseStatement(sql, statement);
+
+        if (buffered == 0) return;
+
+        String rest = insertSql(dialect, table, columns, buffered);
+        PreparedStatement last = pooled.prepareStatement(rest);
+        try {
+            bind(last, values, buffered * width);
+            last.executeUpdate();
+        } catch (SQLException e) {
+            pooled.discardStatement(last);
+            throw new SQLException("Loading rows %d to %d of %s failed: %s"
+                    .formatted(sent + 1, sent + buffered, path, e.getMessage()), e);
+        }
+        pooled.releaseStatement(rest, last);
+        progress.add(buffered);
+    }
+
+    /**
+     * Sends the batch, a failure names the rows of the file it held
+     * @param sent rows sent before this batch
+     * **/
+    private static void execute (PreparedStatement statement, long sent, long rows, String path) throws SQLException {
+        try {
+            statement.executeBatch();
+        } catch (SQLException e) {
+            throw new SQLException("Loading rows %d to %d of %s failed: %s"
+                    .formatted(sent + 1, sent + rows, path, e.getMessage()), e);
+        }
+    }
+
+    private static void convert (CsvReader reader, List<Column> columns, Object[] values, int offset, String path) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+
+            try {
+                values[offset + i] = reader.isNull(i, column.isText() || column.isBinary()) ? column.none() : switch (column.type()) {
+                    case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> reader.getLong(i);
+                    case Types.REAL, Types.FLOAT, Types.DOUBLE -> reader.getDouble(i);
+                    case Types.DECIMAL, Types.NUMERIC -> new BigDecimal(reader.get(i).strip());
+                    case Types.BOOLEAN, Types.BIT -> parseBoolean(reader.get(i));
+                    case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB ->
+                            Base64.getDecoder().decode(reader.get(i).strip());
+                    default -> reader.get(i);
+                };
+            } catch (RuntimeException e) {
+                throw new SQLException("Row %d, column %s of %s: %s"
+                        .formatted(reader.getRow() - (bulkHeader ? 1 : 0), column.name(), path, e.getMessage()), e);
+            }
+        }
+    }
+
+    private static Boolean parseBoolean (String value) {
+        return switch (value.strip().toLowerCase(Locale.ROOT)) {
+            case "1", "true", "t", "yes", "y" -> true;
+            case "0", "false", "f", "no", "n" -> false;
+            default -> throw new IllegalArgumentException("Not a boolean: " + value);
+        };
+    }
+
+    private static void bind (PreparedStatement statement, Object[] values, int length) throws SQLException {
+        for (int i = 0; i < length; i++) {
+            Parameters.bind(statement, i + 1, values[i]);
+        }
+    }
+
+    private static String insertSql (Dialect dialect, String table, List<Column> columns, int rows) {
+        StringJoiner names = new StringJoiner(", ", "(", ")");
+        StringJoiner row = new StringJoiner(", ", "(", ")");
+        for (Column column : columns) {
+            names.add(dialect.quote(column.name()));
+            row.add("?");
+        }
+
+        StringBuilder sql = new StringBuilder("insert into ").append(table).append(' ').append(names).append(" values ");
+        String placeholders = row.toString();
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(placeholders);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Columns of the table in their order, from the driver's metadata. The name may be qualified with a schema or
+     * database, and is looked up as written, then in upper and lower case.
+     * @throws SQLException when the table has no columns
+     * **/
+    private static List<Column> columns (PooledConnection pooled, String table) throws SQLException {
+        int dot = table.lastIndexOf('.');
+        String schema = dot < 0 ? null : unquote(table.substring(0, dot));
+        String name = unquote(table.substring(dot + 1));
+
+        Connection connection = pooled.getConnection();
+        DatabaseMetaData metaData = connection.getMetaData();
+        boolean catalogs = pooled.getDialect() == Dialect.MYSQL;
+        String catalog = catalogs ? (schema != null ? schema : connection.getCatalog()) : null;
+        if (catalogs) schema = null;
+
+        for (String candidate : new String[]{name, name.toUpperCase(Locale.ROOT), name.toLowerCase(Locale.ROOT)}) {
+            List<Column> columns = new ArrayList<>();
+
+            try (ResultSet set = metaData.getColumns(catalog, schema, candidate, null)) {
+                while (set.next()) {
+                    int type = set.getInt("DATA_TYPE");
+                    columns.add(new Column(set.getString("COLUMN_NAME"), type, Parameters.nullOf(type)));
+                }
+            }
+            if (!columns.isEmpty()) return columns;
+        }
+
+        throw new SQLException("Table %s not found".formatted(table));
+    }
+
+    /**
+     * Reads the header row and returns the table column of every field, in file order
+     * **/
+    private static List<Column> header (CsvReader reader, List<Column> tableColumns, String path, String table) throws IOException, SQLException {
+        if (!reader.next()) return List.of();
+
+        List<Column> columns = new ArrayList<>(reader.size());
+        for (int i = 0; i < reader.size(); i++) {
+            String name = unquote(reader.get(i).strip());
+
+            Column match = null;
+            for (Column column : tableColumns) {
+                if (column.name().equalsIgnoreCase(name)) match = column;
+            }
+            if (match == null) throw new SQLException("Column %s of %s is not in table %s".formatted(name, path, table));
+            columns.add(match);
+        }
+        return columns;
+    }
+
+    private static String unquote (String name) {
+        if (name.length() >= 2) {
+            char first = name.charAt(0);
+            char last = name.charAt(name.length() - 1);
+            if ((first == '`' || first == '"' || first == '[') && (last == '`' || last == '"' || last == ']')) {
+                return name.substring(1, name.length() - 1);
+            }
+        }
+        return name;
+    }
+
+    private static byte delimiter (Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.matches(".*\\.(tsv|tab)(\\.[a-z0-9]+)?") ? (byte) '\t' : (byte) ',';
+    }
+
+    /**
+     * MySQL reads the file itself when Connector/J can be handed a decompressed stream, or when the file is not
+     * compressed, for example with the MariaDB driver. A connection that does not allow {@code LOCAL INFILE} loads with
+     * {@code INSERT}s instead.
+     * **/
+    private static boolean useLocalInfile (PooledConnection pooled, Path file) throws IOException, SQLException {
+        return bulkLocalInfile && pooled.getDialect() == Dialect.MYSQL && allowsLocalInfile(pooled)
+                && (streamsLocalInfile(pooled) || !FileUtil.isCompressed(file));
+    }
+
+    /**
+     * Connector/J 8 refuses {@code LOCAL INFILE} unless the url sets {@code allowLoadLocalInfile=true}, the MariaDB driver
+     * allows it unless the url sets {@code allowLocalInfile=false}
+     * **/
+    private static boolean allowsLocalInfile (PooledConnection pooled) throws SQLException {
+        String url = pooled.getConnection().getMetaData().getURL().toLowerCase(Locale.ROOT);
+        if (url.startsWith("jdbc:mariadb:")) return !url.contains("allowlocalinfile=false");
+        return url.contains("allowloadlocalinfile=true");
+    }
+
+    private static boolean streamsLocalInfile (PooledConnection pooled) throws SQLException {
+        return pooled.getConnection().isWrapperFor(JdbcConnection.class);
+    }
+
+    /**
+     * Loads the file with {@code LOAD DATA LOCAL INFILE}. Values are read with the same rules as {@link #insert}: no
+     * backslash escapes, {@code \N} and empty values of non-text columns are {@code NULL}, binary values are Base64.
+     * @param reader positioned after the header, used to find the line break of files without a header
+     * @return the amount of rows loaded
+     * **/
+    private static long localInfile (PooledConnection pooled, Path file, String table, List<Column> columns,
+                                     byte delimiter, CsvReader reader) throws IOException, SQLException {
+
+        boolean crlf = bulkHeader ? reader.isCrLf() : reader.next() && reader.isCrLf();
+
+        StringJoiner variables = new StringJoiner(", ", "(", ")");
+        StringJoiner assignments = new StringJoiner(", ", " set ", "");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            String variable = "@v" + i;
+            variables.add(variable);
+            String value;
+            if (column.isText()) value = "nullif(%s, '\\\\N')".formatted(variable);
+            else if (column.isBinary()) value = "if(%1$s = '\\\\N', null, from_base64(%1$s))".formatted(variable);
+            else value = "if(%1$s = '' or %1$s = '\\\\N', null, %1$s)".formatted(variable);
+            assignments.add(pooled.getDialect().quote(column.name()) + " = " + value);
+        }
+
+        boolean stream = streamsLocalInfile(pooled);
+        String source = stream ? "stream" : file.toAbsolutePath().toString().replace("\\", "/").replace("'", "''");
+        String sql = "load data local infile '" + source + "' into table " + table + " character set utf8mb4"
+                + " fields terminated by '" + (delimiter == '\t' ? "\\t" : ",") + "'"
+                + (delimiter == ',' ? " optionally enclosed by '\"'" : "") + " escaped by ''"
+                + " lines terminated by '" + (crlf ? "\\r\\n" : "\\n") + "'"
+                + (bulkHeader ? " ignore 1 lines " : " ") + variables + assignments;
+
+        try (Statement statement = pooled.getConnection().createStatement();
+             InputStream in = stream ? FileUtil.decompress(Files.newInputStream(file)) : null) {
+
+            if (in != null) statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(in);
+
+            return statement.executeLargeUpdate(sql);
+        }
+    }
+}
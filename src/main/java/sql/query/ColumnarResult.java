@@ -0,0 +1,401 @@
+package sql.query;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Result of a {@code SELECT} stored column by column in primitive arrays instead of an {@code ArrayList<String[]>}.
+ * Integer columns are kept as {@code int[]} (widened to {@code long[]} when a value does not fit), floating point columns
+ * as {@code double[]} and everything else as dictionary-encoded strings. {@code NULL}s are tracked in a bitmap per column.
+ * Column access is O(1) and does not copy.
+ * @see Query#selectColumnar(String, Object...)
+ * @see Result#extractColumn(ColumnarResult, int)
+ * **/
+public class ColumnarResult {
+
+    private final Column[] columns;
+    private final int rowCount;
+
+    private ColumnarResult (Column[] columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Reads every remaining row of the cursor with its typed getters, so no value is boxed or turned into a {@code String}
+     * unless the column is a text column. Closes the cursor.
+     * **/
+    public static ColumnarResult from (Cursor cursor) throws SQLException {
+        try (cursor) {
+            String[] names = cursor.getColumnNames();
+            int[] types = cursor.getColumnTypes();
+
+            ColumnBuilder[] builders = new ColumnBuilder[names.length];
+            for (int i = 0; i < builders.length; i++) {
+                builders[i] = ColumnBuilder.forType(names[i], types[i]);
+            }
+
+            int rows = 0;
+            while (cursor.advance()) {
+                for (int i = 0; i < builders.length; i++) {
+                    builders[i].read(cursor, i, rows);
+                }
+                rows++;
+            }
+
+            Column[] columns = new Column[builders.length];
+            for (int i = 0; i < builders.length; i++) {
+                columns[i] = builders[i].build(rows);
+            }
+
+            return new ColumnarResult(columns, rows);
+        }
+    }
+
+    public int getRowCount () {
+        return rowCount;
+    }
+
+    public int getColumnCount () {
+        return columns.length;
+    }
+
+    public Column getColumn (int column) {
+        return columns[column];
+    }
+
+    /**
+     * Returns the column with this name, ignoring case, or {@code null} if there is none
+     * **/
+    public Column getColumn (String name) {
+        for (Column column : columns) {
+            if (column.getName().equalsIgnoreCase(name)) return column;
+        }
+        return null;
+    }
+
+    public String[] getColumnNames () {
+        String[] names = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Converts back to the {@code ArrayList<String[]>} layout of {@link Query#fromString(String)}, with the column names
+     * and the empty separator row first. Only meant for printing through {@link log.Log#logSelect}.
+     * **/
+    public ArrayList<String[]> toList () {
+        ArrayList<String[]> result = new ArrayList<>(rowCount + 2);
+        result.add(getColumnNames());
+        result.add(new String[]{"", "", ""});
+
+        for (int row = 0; row < rowCount; row++) {
+            String[] values = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i].getString(row);
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    /**
+     * A single column of a {@link ColumnarResult}. Cast it to the subclass matching {@link #getSqlType()} for typed access.
+     * **/
+    public abstract static sealed class Column permits IntColumn, LongColumn, DoubleColumn, StringColumn {
+
+        private final String name;
+        private final int sqlType;
+        private final int size;
+        private final long[] nulls;
+
+        Column (String name, int sqlType, int size, long[] nulls) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.size = size;
+            this.nulls = nulls;
+        }
+
+        public String getName () {
+            return name;
+        }
+
+        /**
+         * Type of the column as a {@link Types} value, as reported by {@code ResultSetMetaData}
+         * **/
+        public int getSqlType () {
+            return sqlType;
+        }
+
+        public int size () {
+            return size;
+        }
+
+        public boolean isNull (int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * The value as {@code String}, or {@code null} for {@code NULL}. Allocates for numeric columns.
+         * **/
+        public abstract String getString (int row);
+    }
+
+    public static final class IntColumn extends Column {
+
+        private final int[] values;
+
+        IntColumn (String name, int sqlType, int size, long[] nulls, int[] values) {
+            super(name, sqlType, size, nulls);
+            this.values = values;
+        }
+
+        public int getInt (int row) {
+            return values[row];
+        }
+
+        /**
+         * Backing array, {@code NULL} rows hold 0. Do not modify.
+         * **/
+        public int[] values () {
+            return values;
+        }
+
+        @Override
+        public String getString (int row) {
+            return isNull(row) ? null : Integer.toString(values[row]);
+        }
+    }
+
+    public static final class LongColumn extends Column {
+
+        private final long[] values;
+
+        LongColumn (String name, int sqlType, int size, long[] nulls, long[] values) {
+            super(name, sqlType, size, nulls);
+            this.values = values;
+        }
+
+        public long getLong (int row) {
+            return values[row];
+        }
+
+        /**
+         * Backing array, {@code NULL} rows hold 0. Do not modify.
+         * **/
+        public long[] values () {
+            return values;
+        }
+
+        @Override
+        public String getString (int row) {
+            return isNull(row) ? null : Long.toString(values[row]);
+        }
+    }
+
+    public static final class DoubleColumn extends Column {
+
+        private final double[] values;
+
+        DoubleColumn (String name, int sqlType, int size, long[] nulls, double[] values) {
+            super(name, sqlType, size, nulls);
+            this.values = values;
+        }
+
+        public double getDouble (int row) {
+            return values[row];
+        }
+
+        /**
+         * Backing array, {@code NULL} rows hold 0. Do not modify.
+         * **/
+        public double[] values () {
+            return values;
+        }
+
+        @Override
+        public String getString (int row) {
+            return isNull(row) ? null : Double.toString(values[row]);
+        }
+    }
+
+    /**
+     * Text column stored as one code per row pointing into a dictionary of distinct values
+     * **/
+    public static final class StringColumn extends Column {
+
+        private final int[] codes;
+        private final String[] dictionary;
+
+        StringColumn (String name, int sqlType, int size, long[] nulls, int[] codes, String[] dictionary) {
+            super(name, sqlType, size, nulls);
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Index of the row's value in {@link #getDictionary()}, -1 for {@code NULL}
+         * **/
+        public int getCode (int row) {
+            return codes[row];
+        }
+
+        /**
+         * Distinct values of the column in order of first appearance. Do not modify.
+         * **/
+        public String[] getDictionary () {
+            return dictionary;
+        }
+
+        @Override
+        public String getString (int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary[code];
+        }
+    }
+
+    /**
+     * Growable storage for one column while the rows are read
+     * **/
+    private abstract static class ColumnBuilder {
+
+        final String name;
+        final int sqlType;
+        long[] nulls = new long[1];
+
+        ColumnBuilder (String name, int sqlType) {
+            this.name = name;
+            this.sqlType = sqlType;
+        }
+
+        static ColumnBuilder forType (String name, int sqlType) {
+            return switch (sqlType) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.BOOLEAN ->
+                        new IntegralBuilder(name, sqlType);
+                case Types.REAL, Types.FLOAT, Types.DOUBLE -> new DoubleBuilder(name, sqlType);
+                default -> new TextBuilder(name, sqlType);
+            };
+        }
+
+        abstract void read (Cursor cursor, int column, int row) throws SQLException;
+
+        abstract Column build (int size);
+
+        void setNull (int row) {
+            if ((row >>> 6) >= nulls.length) nulls = Arrays.copyOf(nulls, nulls.length * 2);
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        long[] nulls (int size) {
+            return Arrays.copyOf(nulls, Math.max(1, (size + 63) >>> 6));
+        }
+
+        static boolean isFull (int length, int row) {
+            return row >= length;
+        }
+    }
+
+    /**
+     * Keeps values in an {@code int[]} until one does not fit, then switches to a {@code long[]}
+     * **/
+    private static final class IntegralBuilder extends ColumnBuilder {
+
+        private int[] ints = new int[16];
+        private long[] longs;
+
+        IntegralBuilder (String name, int sqlType) {
+            super(name, sqlType);
+        }
+
+        @Override
+        void read (Cursor cursor, int column, int row) throws SQLException {
+            long value = cursor.getLong(column);
+            if (cursor.wasNull()) setNull(row);
+
+            if (longs == null && (int) value != value) {
+                longs = new long[ints.length];
+                for (int i = 0; i < row; i++) longs[i] = ints[i];
+                ints = null;
+            }
+
+            if (longs != null) {
+                if (isFull(longs.length, row)) longs = Arrays.copyOf(longs, longs.length * 2);
+                longs[row] = value;
+            } else {
+                if (isFull(ints.length, row)) ints = Arrays.copyOf(ints, ints.length * 2);
+                ints[row] = (int) value;
+            }
+        }
+
+        @Override
+        Column build (int size) {
+            if (longs != null) return new LongColumn(name, sqlType, size, nulls(size), Arrays.copyOf(longs, size));
+            return new IntColumn(name, sqlType, size, nulls(size), Arrays.copyOf(ints, size));
+        }
+    }
+
+    private static final class DoubleBuilder extends ColumnBuilder {
+
+        private double[] values = new double[16];
+
+        DoubleBuilder (String name, int sqlType) {
+            super(name, sqlType);
+        }
+
+        @Override
+        void read (Cursor cursor, int column, int row) throws SQLException {
+            double value = cursor.getDouble(column);
+            if (cursor.wasNull()) setNull(row);
+
+            if (isFull(values.length, row)) values = Arrays.copyOf(values, values.length * 2);
+            values[row] = value;
+        }
+
+        @Override
+        Column build (int size) {
+            return new DoubleColumn(name, sqlType, size, nulls(size), Arrays.copyOf(values, size));
+        }
+    }
+
+    private static final class TextBuilder extends ColumnBuilder {
+
+        private int[] codes = new int[16];
+        private final HashMap<String, Integer> lookup = new HashMap<>();
+        private final ArrayList<String> dictionary = new ArrayList<>();
+
+        TextBuilder (String name, int sqlType) {
+            super(name, sqlType);
+        }
+
+        @Override
+        void read (Cursor cursor, int column, int row) throws SQLException {
+            String value = cursor.getString(column);
+            if (isFull(codes.length, row)) codes = Arrays.copyOf(codes, codes.length * 2);
+
+            if (value == null) {
+                setNull(row);
+                codes[row] = -1;
+                return;
+            }
+
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                lookup.put(value, code);
+                dictionary.add(value);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        Column build (int size) {
+            return new StringColumn(name, sqlType, size, nulls(size), Arrays.copyOf(codes, size),
+                    dictionary.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package sql.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streams delimited rows out of an {@link InputStream} without a {@code String} per line. The bytes are read into one
+ * buffer that only grows for rows longer than it, every field of the current row is a range of that buffer, and quoted
+ * fields are unquoted in place. Values are decoded only when asked for, integers straight from the bytes.
+ * <p>
+ * Quoting follows RFC 4180: a field starting with {@code "} may hold delimiters and line breaks, {@code ""} inside it
+ * is one quote. Without quoting every line is a row and every delimiter ends a field, which is the TSV format.
+ * Line breaks can be {@code \n} or {@code \r\n}, blank lines are skipped and a UTF-8 byte order mark is ignored.
+ * @see BulkLoader
+ * **/
+final class CsvReader implements AutoCloseable {
+
+    private static final byte QUOTE = '"';
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private final InputStream in;
+    private final byte delimiter;
+    private final boolean quoting;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    /**
+     * Where the search for the end of the current row continues after the buffer was refilled, and in which state
+     * **/
+    private int scan;
+    private int state = FIELD_START;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int count;
+
+    private boolean started;
+    private long rows;
+    private boolean crlf;
+
+    /**
+     * @param quoting whether {@code "} quotes fields, off for TSV
+     * @param bufferSize initial size of the buffer, rows longer than this grow it
+     * **/
+    CsvReader (InputStream in, byte delimiter, boolean quoting, int bufferSize) {
+        this.in = in;
+        this.delimiter = delimiter;
+        this.quoting = quoting;
+        this.buffer = new byte[Math.max(1024, bufferSize)];
+    }
+
+    /**
+     * Moves to the next row. The fields of the previous row are no longer valid afterwards.
+     * @return {@code false} at the end of the stream
+     * **/
+    boolean next () throws IOException {
+        if (!started) {
+            started = true;
+            skipByteOrderMark();
+        }
+
+        while (true) {
+            int end = rowEnd();
+            if (end < 0) return false;
+
+            int next = Math.min(end + 1, limit);
+            if (end > position && buffer[end - 1] == '\r') {
+                end--;
+                if (rows == 0) crlf = true;
+            }
+
+            if (end > position) {
+                split(position, end);
+                position = next;
+                resetScan();
+                rows++;
+                return true;
+            }
+
+            position = next;
+            resetScan();
+        }
+    }
+
+    /**
+     * Amount of fields in the current row
+     * **/
+    int size () {
+        return count;
+    }
+
+    /**
+     * Whether the field is missing, is an unquoted {@code \N}, or is empty and unquoted while the column is not text
+     * **/
+    boolean isNull (int field, boolean text) {
+        if (field >= count) return true;
+        if (quoted[field]) return false;
+
+        int length = ends[field] - starts[field];
+        if (length == 0) return !text;
+        return length == 2 && buffer[starts[field]] == '\\' && buffer[starts[field] + 1] == 'N';
+    }
+
+    String get (int field) {
+        if (field >= count) return null;
+        return new String(buffer, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses an integer field without decoding it, surrounding spaces are allowed
+     * @throws NumberFormatException when the field is not an integer
+     * **/
+    long getLong (int field) {
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && buffer[start] == ' ') start++;
+        while (end > start && buffer[end - 1] == ' ') end--;
+
+        boolean negative = start < end && buffer[start] == '-';
+        int digits = negative || start < end && buffer[start] == '+' ? start + 1 : start;
+
+        //19 digits can overflow, leave those to the JDK
+        if (digits == end || end - digits > 18) return Long.parseLong(get(field).strip());
+
+        long value = 0;
+        for (int i = digits; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("For input string: \"" + get(field) + "\"");
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    double getDouble (int field) {
+        return Double.parseDouble(get(field).strip());
+    }
+
+    /**
+     * Rows read so far, blank lines not counted
+     * **/
+    long getRow () {
+        return rows;
+    }
+
+    /**
+     * Whether the first row ended with {@code \r\n}
+     * **/
+    boolean isCrLf () {
+        return crlf;
+    }
+
+    @Override
+    public void close () throws IOException {
+        in.close();
+    }
+
+    /**
+     * Index of the line break ending the row at {@link #position}, {@link #limit} for a last row without one, or
+     * {@code -1} at the end of the stream. Refills the buffer until the whole row is in it.
+     * **/
+    private int rowEnd () throws IOException {
+        while (true) {
+            for (; scan < limit; scan++) {
+                byte b = buffer[scan];
+
+                if (state == QUOTED) {
+                    if (b == QUOTE) state = QUOTE_IN_QUOTED;
+                } else if (b == '\n') {
+                    return scan;
+                } else if (b == delimiter) {
+                    state = FIELD_START;
+                } else if (state == QUOTE_IN_QUOTED) {
+                    state = b == QUOTE ? QUOTED : UNQUOTED;
+                } else if (state == FIELD_START) {
+                    state = quoting && b == QUOTE ? QUOTED : UNQUOTED;
+                }
+            }
+
+            if (!fill()) return position < limit ? limit : -1;
+        }
+    }
+
+    /**
+     * Finds the fields between {@code start} and {@code end} and unquotes them in place
+     * **/
+    private void split (int start, int end) {
+        count = 0;
+        int i = start;
+
+        while (true) {
+            int fieldStart = i;
+            int fieldEnd;
+            boolean isQuoted = quoting && i < end && buffer[i] == QUOTE;
+
+            if (isQuoted) {
+                fieldStart = ++i;
+                int write = i;
+
+                while (i < end) {
+                    byte b = buffer[i++];
+                    if (b == QUOTE) {
+                        if (i < end && buffer[i] == QUOTE) i++;
+                        else break;
+                    }
+                    buffer[write++] = b;
+                }
+                //Text after the closing quote belongs to the field, like most parsers read it
+                while (i < end && buffer[i] != delimiter) buffer[write++] = buffer[i++];
+                fieldEnd = write;
+            } else {
+                while (i < end && buffer[i] != delimiter) i++;
+                fieldEnd = i;
+            }
+
+            add(fieldStart, fieldEnd, isQuoted);
+
+            if (i >= end) return;
+            i++;
+            if (i == end) {
+                add(end, end, false);
+                return;
+            }
+        }
+    }
+
+    private void add (int start, int end, boolean isQuoted) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            quoted = Arrays.copyOf(quoted, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        quoted[count] = isQuoted;
+        count++;
+    }
+
+    private void resetScan () {
+        scan = position;
+        state = FIELD_START;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer, grows it when a row fills all of it, and reads more
+     * @return {@code false} at the end of the stream
+     * **/
+    private boolean fill () throws IOException {
+        if (eof) return false;
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scan -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private void skipByteOrderMark () throws IOException {
+        while (limit < 3 && fill()) {
+            //read until the mark can be checked
+        }
+        if (limit >= 3 && buffer[0] == (byte) 0xEF && buffer[1] == (byte) 0xBB && buffer[2] == (byte) 0xBF) {
+            position = 3;
+            resetScan();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package sql.query;
+
+import common.CrashUtil;
+import sql.PooledConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily reads the rows of a {@code SELECT}, one fetch batch at a time, instead of materializing the whole result like
+ * {@link Query#fromString(String)} does. Holds a pooled connection until it is closed, so always use it in a
+ * try-with-resources block. It closes itself once the last row was read.
+ * <p>
+ * Rows can be read as {@code String[]} through the {@link Iterator} methods, or typed and without any allocation through
+ * {@link #advance()} and the {@code getXxx} methods. Do not mix both styles on one cursor.
+ * <p>
+ * On MySQL without {@code useCursorFetch=true} in the url the driver streams row by row, the connection can not run any
+ * other statement until the cursor is closed.
+ * @see Query#cursor(String, Object...)
+ * @see Query#stream(String, Object...)
+ * @see common.Settings#FETCH_SIZE
+ * **/
+public class Cursor implements Iterator<String[]>, AutoCloseable {
+
+    private final PooledConnection pooled;
+    private final String sql;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+
+    private final int columnCount;
+    private final String[] columnNames;
+    private final int[] columnTypes;
+
+    private final QueryMetrics.Timer timer;
+    private final boolean measured;
+    private boolean failed;
+
+    private boolean peeked;
+    private boolean hasRow;
+    private boolean closed;
+
+    Cursor (PooledConnection pooled, String sql, PreparedStatement statement, int fetchSize, QueryMetrics.Timer timer) throws SQLException {
+        this.pooled = pooled;
+        this.sql = sql;
+        this.statement = statement;
+        this.timer = timer;
+        this.measured = timer != QueryMetrics.Timer.NONE;
+
+        statement.setFetchSize(fetchSize);
+        this.resultSet = statement.executeQuery();
+        timer.executed();
+        resultSet.setFetchSize(fetchSize);
+
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        columnCount = metaData.getColumnCount();
+        columnNames = new String[columnCount];
+        columnTypes = new int[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnName(i + 1);
+            columnTypes[i] = metaData.getColumnType(i + 1);
+        }
+    }
+
+    public int getColumnCount () {
+        return columnCount;
+    }
+
+    public String[] getColumnNames () {
+        return columnNames.clone();
+    }
+
+    /**
+     * Column types as {@link java.sql.Types} values
+     * **/
+    public int[] getColumnTypes () {
+        return columnTypes.clone();
+    }
+
+    @Override
+    public boolean hasNext () {
+        if (!peeked) {
+            hasRow = advance();
+            peeked = true;
+        }
+        return hasRow;
+    }
+
+    /**
+     * Returns the next row with every value as {@code String}, the same way {@link Query#fromString(String)} does
+     * **/
+    @Override
+    public String[] next () {
+        if (!hasNext()) throw new NoSuchElementException();
+        peeked = false;
+
+        String[] row = new String[columnCount];
+        try {
+            for (int i = 1; i <= columnCount; i++) {
+                Object value = resultSet.getObject(i);
+                row[i - 1] = (value != null) ? value.toString() : null;
+                if (measured && value != null) timer.bytes(row[i - 1].length());
+            }
+        } catch (SQLException e) {
+            failed = true;
+            close();
+            CrashUtil.crash(e);
+        }
+        return row;
+    }
+
+    /**
+     * Moves to the next row for use with the typed getters, returns {@code false} and closes the cursor after the last row
+     * **/
+    public boolean advance () {
+        if (closed) return false;
+
+        try {
+            long start = measured ? System.nanoTime() : 0;
+            boolean next = resultSet.next();
+
+            if (measured) {
+                timer.fetched(System.nanoTime() - start);
+                if (next) timer.rows(1);
+            }
+            if (next) return true;
+        } catch (SQLException e) {
+            failed = true;
+            close();
+            CrashUtil.crash(e);
+        }
+
+        close();
+        return false;
+    }
+
+    public String getString (int column) throws SQLException {
+        return resultSet.getString(column + 1);
+    }
+
+    public long getLong (int column) throws SQLException {
+        return resultSet.getLong(column + 1);
+    }
+
+    public int getInt (int column) throws SQLException {
+        return resultSet.getInt(column + 1);
+    }
+
+    public double getDouble (int column) throws SQLException {
+        return resultSet.getDouble(column + 1);
+    }
+
+    public byte[] getBytes (int column) throws SQLException {
+        return resultSet.getBytes(column + 1);
+    }
+
+    public Object getObject (int column) throws SQLException {
+        return resultSet.getObject(column + 1);
+    }
+
+    /**
+     * Whether the last typed getter read a SQL {@code NULL}
+     * **/
+    public boolean wasNull () throws SQLException {
+        return resultSet.wasNull();
+    }
+
+    /**
+     * Closes the result set, returns the statement to the statement cache and the connection to the pool.
+     * Calling it more than once has no effect.
+     * **/
+    @Override
+    public void close () {
+        if (closed) return;
+        closed = true;
+
+        try {
+            resultSet.close();
+            statement.setFetchSize(0);
+            pooled.releaseStatement(sql, statement);
+        } catch (SQLException e) {
+            pooled.discardStatement(statement);
+            failed = true;
+            CrashUtil.catchError(e);
+        } finally {
+            if (failed) timer.fail();
+            else timer.finish(pooled);
+            pooled.close();
+        }
+    }
+}
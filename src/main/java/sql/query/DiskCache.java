@@ -0,0 +1,810 @@
+package sql.query;
+
+import log.Log;
+import sql.Credentials;
+import sql.DataSources;
+import sql.Route;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+import static common.Settings.DISK_CACHE_DIR;
+import static common.Settings.DISK_CACHE_SEGMENT_SIZE;
+import static common.Settings.DISK_CACHE_SIZE;
+import static common.Settings.DISK_CACHE_TTL;
+import static common.Settings.diskCache;
+
+/**
+ * Second tier of the {@link ResultCache}: {@code SELECT} results kept under {@link common.Settings#DISK_CACHE_DIR}, so a
+ * restarted program does not ask the database again. Results are stored as {@link BinaryResult}s appended to segment
+ * files and read back through memory-mapped buffers. An append-only index log maps each key, the route, the database
+ * url, the normalized SQL and the parameters, to its place in a segment and is replayed on the first lookup after a start.
+ * Only one program uses a folder at a time, it is locked while the cache is open and a second program runs without the
+ * disk cache.
+ * <p>
+ * The files take at most {@link common.Settings#DISK_CACHE_SIZE} bytes: least recently used results are evicted first
+ * and segments holding mostly evicted results are rewritten. Results expire after
+ * {@link common.Settings#DISK_CACHE_TTL} ms of wall clock time, restarts included, and are dropped like memory entries
+ * when the library writes to a table they read. Writes made while the program was not running are only bounded by
+ * the TTL. A failing disk only disables the cache until the next start, queries keep running.
+ * @see common.Settings#diskCache
+ * @see Query#fromPreparedStatement(String, Object...)
+ * **/
+public final class DiskCache {
+
+    private static final String INDEX_FILE = "index.log";
+    private static final String LOCK_FILE = "lock";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    /**
+     * One append-only file of encoded results
+     * **/
+    private static final class Segment {
+
+        final int id;
+        final Path path;
+        long size;
+        long live;
+        int entries;
+        FileChannel writer;
+        MappedByteBuffer mapped;
+
+        Segment (int id, Path path, long size) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+        }
+
+        /**
+         * The bytes of one result, the file is mapped again when it grew past the last mapping
+         * **/
+        ByteBuffer slice (long offset, int length) throws IOException {
+            if (mapped == null || mapped.capacity() < offset + length) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            return mapped.slice((int) offset, length);
+        }
+    }
+
+    private static final class Entry {
+
+        Segment segment;
+        long offset;
+        final int length;
+        final int checksum;
+        final long expires;
+        final Set<String> tables;
+
+        Entry (Segment segment, long offset, int length, int checksum, long expires, Set<String> tables) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+            this.expires = expires;
+            this.tables = tables;
+        }
+    }
+
+    /**
+     * An entry as the index log stores it
+     * **/
+    private record Record(int segment, long offset, int length, int checksum, long expires, Set<String> tables) {}
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private static final Map<String, Set<String>> byTable = new HashMap<>();
+    private static final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private static Segment active;
+
+    private static Path directory;
+    /**
+     * Holds the lock on {@link #LOCK_FILE} while the cache is open, closing it releases the lock
+     * **/
+    private static FileChannel lockChannel;
+    private static DataOutputStream index;
+    private static int indexRecords;
+    private static long fileBytes;
+    private static long liveBytes;
+
+    private static boolean opened;
+    private static boolean failed;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    private DiskCache () {
+    }
+
+    /**
+     * Returns the stored rows, or {@code null} on a miss or when the disk cache is off
+     * **/
+    static ArrayList<String[]> get (String sql, Object[] parameters) {
+        if (!diskCache) return null;
+
+        String key = key(sql, parameters);
+        if (key == null) return null;
+
+        Entry entry;
+        ByteBuffer bytes;
+
+        synchronized (entries) {
+            if (!open()) return null;
+
+            entry = entries.get(key);
+            if (entry != null && entry.expires <= System.currentTimeMillis()) {
+                remove(key);
+                entry = null;
+            }
+
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+
+            try {
+                bytes = entry.segment.slice(entry.offset, entry.length);
+            } catch (IOException e) {
+                fail(e);
+                return null;
+            }
+        }
+
+        try {
+            if (checksum(bytes) == entry.checksum) {
+                ArrayList<String[]> rows = BinaryResult.wrap(bytes).toList();
+                hits.increment();
+                return rows;
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ignored) {
+            // Reported below like a checksum mismatch
+        }
+
+        Log.warn("Dropping damaged disk cache entry in " + entry.segment.path);
+        synchronized (entries) {
+            if (entries.get(key) == entry) remove(key);
+            misses.increment();
+        }
+        return null;
+    }
+
+    /**
+     * Stores a result unless a write happened since {@code readGeneration}, or it takes more than half the disk budget
+     * @see ResultCache#generation()
+     * **/
+    static void put (String sql, Object[] parameters, ArrayList<String[]> rows, long readGeneration) {
+        if (!diskCache || rows == null) return;
+
+        String key = key(sql, parameters);
+        if (key == null) return;
+
+        BinaryResult encoded = BinaryResult.encode(rows);
+        if (encoded.size() > Math.max(0, DISK_CACHE_SIZE) / 2) return;
+
+        ByteBuffer bytes = encoded.asBuffer();
+        int checksum = checksum(bytes);
+        long expires = DISK_CACHE_TTL > 0 ? System.currentTimeMillis() + DISK_CACHE_TTL : Long.MAX_VALUE;
+        Set<String> tables = TableNames.of(sql);
+
+        synchronized (entries) {
+            if (!open() || ResultCache.generation() != readGeneration) return;
+
+            try {
+                remove(key);
+                if (failed) return;
+
+                Segment segment = writable(bytes.remaining());
+                long offset = append(segment, bytes);
+                add(key, new Entry(segment, offset, encoded.size(), checksum, expires, tables));
+
+                evict();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Drops every entry reading one of the tables, or every entry when the set is empty
+     * @see ResultCache#invalidate(String)
+     * **/
+    static void invalidate (Set<String> tables) {
+        synchronized (entries) {
+            if (!diskCache && !opened) return;
+            if (!open()) return;
+
+            if (!diskCache || tables.isEmpty()) {
+                invalidations.add(entries.size());
+                clearEntries();
+                return;
+            }
+
+            for (String table : tables) {
+                Set<String> keys = byTable.get(table);
+                if (keys == null) continue;
+
+                for (String key : new ArrayList<>(keys)) {
+                    remove(key);
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether no result is stored, a cache that was not opened yet counts as empty
+     * **/
+    static boolean isEmpty () {
+        synchronized (entries) {
+            return !opened || entries.isEmpty();
+        }
+    }
+
+    /**
+     * Deletes every stored result
+     * **/
+    public static void clear () {
+        synchronized (entries) {
+            if (open()) clearEntries();
+        }
+    }
+
+    /**
+     * Writes a compact index and closes the files. The next lookup opens the cache again.
+     * Called by {@link sql.Quit#end(long, long)}.
+     * **/
+    public static void close () {
+        synchronized (entries) {
+            if (!opened) return;
+
+            try {
+                writeIndex();
+            } catch (IOException e) {
+                Log.warn("Could not write disk cache index: " + e.getMessage());
+            }
+            release();
+        }
+    }
+
+    /**
+     * Replays the index log once, keeps the entries whose bytes are still in their segment and deletes unused segments
+     * @return {@code false} when the cache failed and is off until the next start
+     * **/
+    private static boolean open () {
+        if (opened) return true;
+        if (failed) return false;
+
+        try {
+            directory = Path.of(DISK_CACHE_DIR);
+            Files.createDirectories(directory);
+
+            if (!lock()) {
+                Log.warn("Disk cache disabled, %s is used by another program".formatted(directory.toAbsolutePath()));
+                failed = true;
+                return false;
+            }
+
+            Map<Integer, Long> sizes = new HashMap<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        sizes.put(id, Files.size(file));
+                    } catch (NumberFormatException ignored) {
+                        // Not one of ours
+                    }
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Record> replayed : replay().entrySet()) {
+                Record record = replayed.getValue();
+                Long size = sizes.get(record.segment());
+                if (size == null || record.offset() + record.length() > size || record.expires() <= now) continue;
+
+                Segment segment = segments.computeIfAbsent(record.segment(), id -> new Segment(id, segmentPath(id), size));
+                add(replayed.getKey(), new Entry(segment, record.offset(), record.length(), record.checksum(),
+                        record.expires(), record.tables()));
+            }
+
+            for (Map.Entry<Integer, Long> file : sizes.entrySet()) {
+                Segment segment = segments.get(file.getKey());
+                if (segment == null) Files.deleteIfExists(segmentPath(file.getKey()));
+                else fileBytes += segment.size;
+            }
+
+            opened = true;
+            roll();
+            writeIndex();
+
+            if (!entries.isEmpty()) {
+                Log.info("Disk cache opened with %d results, %.1f MiB".formatted(entries.size(), fileBytes / 1048576.0));
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    /**
+     * Takes the lock on the folder, {@code false} when another program holds it
+     * **/
+    private static boolean lock () throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+
+        if (lock == null) {
+            channel.close();
+            return false;
+        }
+
+        lockChannel = channel;
+        return true;
+    }
+
+    /**
+     * Reads the index log in order, the last record of a key wins. A torn record at the end is ignored.
+     * **/
+    private static LinkedHashMap<String, Record> replay () throws IOException {
+        LinkedHashMap<String, Record> records = new LinkedHashMap<>();
+        Path file = directory.resolve(INDEX_FILE);
+        if (!Files.exists(file)) return records;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            while (true) {
+                int type = in.read();
+                if (type < 0) break;
+
+                String key = readString(in);
+                if (type == REMOVE) {
+                    records.remove(key);
+                    continue;
+                }
+                if (type != PUT) throw new EOFException("Damaged disk cache index");
+
+                int segment = in.readInt();
+                long offset = in.readLong();
+                int length = in.readInt();
+                int checksum = in.readInt();
+                long expires = in.readLong();
+                int tableCount = in.readInt();
+                Set<String> tables = new LinkedHashSet<>();
+                for (int i = 0; i < tableCount; i++) tables.add(readString(in));
+
+                records.remove(key);
+                records.put(key, new Record(segment, offset, length, checksum, expires, tables));
+            }
+        } catch (EOFException ignored) {
+            // The program stopped while writing the last record, the entries before it are still good
+        }
+        return records;
+    }
+
+    /**
+     * Rewrites the index log with one record per entry, least recently used first, so the order survives a restart
+     * **/
+    private static void writeIndex () throws IOException {
+        if (index != null) index.close();
+
+        Path file = directory.resolve(INDEX_FILE);
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024))) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) writePut(out, entry.getKey(), entry.getValue());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+        indexRecords = entries.size();
+    }
+
+    private static void writePut (DataOutputStream out, String key, Entry entry) throws IOException {
+        out.writeByte(PUT);
+        writeString(out, key);
+        out.writeInt(entry.segment.id);
+        out.writeLong(entry.offset);
+        out.writeInt(entry.length);
+        out.writeInt(entry.checksum);
+        out.writeLong(entry.expires);
+        out.writeInt(entry.tables.size());
+        for (String table : entry.tables) writeString(out, table);
+    }
+
+    /**
+     * Appends one record to the index log, rewriting it once it holds mostly outdated records
+     * **/
+    private static void record (String key, Entry entry) throws IOException {
+        if (entry != null) {
+            writePut(index, key, entry);
+        } else {
+            index.writeByte(REMOVE);
+            writeString(index, key);
+        }
+        index.flush();
+
+        if (++indexRecords > 2 * entries.size() + 1024) writeIndex();
+    }
+
+    private static void add (String key, Entry entry) throws IOException {
+        entries.put(key, entry);
+        entry.segment.live += entry.length;
+        entry.segment.entries++;
+        liveBytes += entry.length;
+
+        for (String table : entry.tables) {
+            byTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+        }
+        if (opened) record(key, entry);
+    }
+
+    private static void remove (String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return;
+
+        forget(key, entry);
+        try {
+            record(key, null);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Removes an entry that already left {@link #entries} from the sizes, the table index and its segment
+     * **/
+    private static void forget (String key, Entry entry) {
+        liveBytes -= entry.length;
+        for (String table : entry.tables) {
+            Set<String> keys = byTable.get(table);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) byTable.remove(table);
+        }
+
+        Segment segment = entry.segment;
+        segment.live -= entry.length;
+        if (--segment.entries == 0 && segment != active) delete(segment);
+    }
+
+    /**
+     * Evicts least recently used entries until they fit the budget, then rewrites the segments with the most evicted
+     * bytes until the files fit too
+     * **/
+    private static void evict () throws IOException {
+        long budget = Math.max(0, DISK_CACHE_SIZE);
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (liveBytes > budget && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            forget(evicted.getKey(), evicted.getValue());
+            record(evicted.getKey(), null);
+            evictions.increment();
+        }
+
+        while (fileBytes > budget && compact()) {
+            // Every pass frees the evicted bytes of one segment
+        }
+    }
+
+    /**
+     * Copies the remaining entries of the segment with the lowest share of live bytes into the active one
+     * @return {@code false} when no segment holds evicted bytes
+     * **/
+    private static boolean compact () throws IOException {
+        Segment emptiest = null;
+        for (Segment segment : segments.values()) {
+            if (segment.live == segment.size) continue;
+            if (emptiest == null || (double) segment.live / segment.size < (double) emptiest.live / emptiest.size) {
+                emptiest = segment;
+            }
+        }
+        if (emptiest == null) return false;
+        if (emptiest == active) {
+            roll();
+            if (!segments.containsKey(emptiest.id)) return true;
+        }
+
+        for (Map.Entry<String, Entry> moved : entries.entrySet()) {
+            Entry entry = moved.getValue();
+            if (entry.segment != emptiest) continue;
+
+            ByteBuffer bytes = emptiest.slice(entry.offset, entry.length);
+            Segment target = writable(entry.length);
+            long offset = append(target, bytes);
+
+            emptiest.live -= entry.length;
+            emptiest.entries--;
+            target.live += entry.length;
+            target.entries++;
+            entry.segment = target;
+            entry.offset = offset;
+            record(moved.getKey(), entry);
+        }
+
+        delete(emptiest);
+        return true;
+    }
+
+    /**
+     * The active segment, or a new one when {@code length} more bytes would pass the segment size
+     * **/
+    private static Segment writable (int length) throws IOException {
+        long limit = Math.clamp(DISK_CACHE_SEGMENT_SIZE, 1 << 16, 1 << 30);
+        if (active.size > 0 && active.size + length > limit) roll();
+        return active;
+    }
+
+    private static long append (Segment segment, ByteBuffer bytes) throws IOException {
+        long offset = segment.size;
+        long position = offset;
+
+        while (bytes.hasRemaining()) position += segment.writer.write(bytes, position);
+
+        segment.size = position;
+        fileBytes += position - offset;
+        return offset;
+    }
+
+    /**
+     * Starts a new active segment, the previous one stays readable
+     * **/
+    private static void roll () throws IOException {
+        if (active != null) {
+            active.writer.close();
+            active.writer = null;
+            if (active.entries == 0) delete(active);
+        }
+
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment segment = new Segment(id, segmentPath(id), 0);
+        segment.writer = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segments.put(id, segment);
+        active = segment;
+    }
+
+    private static void delete (Segment segment) {
+        if (segments.remove(segment.id) == null) return;
+        fileBytes -= segment.size;
+        segment.mapped = null;
+
+        try {
+            if (segment.writer != null) segment.writer.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            Log.warn("Could not delete disk cache segment %s: %s".formatted(segment.path, e.getMessage()));
+        }
+    }
+
+    private static void clearEntries () {
+        entries.clear();
+        byTable.clear();
+        liveBytes = 0;
+
+        for (Segment segment : new ArrayList<>(segments.values())) delete(segment);
+        active = null;
+
+        try {
+            roll();
+            writeIndex();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Turns the cache off until the next start, the files are kept for then
+     * **/
+    private static void fail (Exception e) {
+        Log.error("Disk cache disabled: " + e.getMessage());
+        failed = true;
+        release();
+    }
+
+    private static void release () {
+        try {
+            if (index != null) index.close();
+            if (active != null && active.writer != null) active.writer.close();
+        } catch (IOException e) {
+            Log.warn("Could not close disk cache: " + e.getMessage());
+        }
+
+        try {
+            if (lockChannel != null) lockChannel.close();
+        } catch (IOException e) {
+            Log.warn("Could not unlock disk cache: " + e.getMessage());
+        }
+
+        entries.clear();
+        byTable.clear();
+        segments.clear();
+        active = null;
+        index = null;
+        lockChannel = null;
+        fileBytes = liveBytes = 0;
+        opened = false;
+    }
+
+    private static Path segmentPath (int id) {
+        return directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Route, url of the database, SQL and parameters. Whitespace and comments of the SQL are collapsed, literals and case
+     * stay. The url keeps results apart when the same cache folder is used against another database, {@code null} when
+     * it is not known yet.
+     * **/
+    private static String key (String sql, Object[] parameters) {
+        Route route = DataSources.current();
+        String url = route == null ? url() : route.getPrimary().getUrl();
+        if (url == null) return null;
+
+        StringBuilder key = new StringBuilder(sql.length() + url.length() + 32);
+        key.append(route == null ? "" : route.getName()).append('\0').append(url).append('\0');
+        normalize(sql, key);
+
+        if (parameters != null) {
+            for (Object parameter : parameters) {
+                key.append('\0');
+                if (parameter == null) key.append("null");
+                else key.append(parameter.getClass().getSimpleName()).append(':').append(parameter);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Url of {@link sql.SqlConnection}, loading the credentials if needed
+     * **/
+    private static String url () {
+        try {
+            Credentials.load();
+            return Credentials.getUrl();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void normalize (String sql, StringBuilder out) {
+        int length = sql.length();
+        int start = out.length();
+        boolean space = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') i++;
+                space = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                space = true;
+                continue;
+            }
+
+            if (space && out.length() > start) out.append(' ');
+            space = false;
+
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = QueryMetrics.skipQuoted(sql, i, c);
+                out.append(sql, i, end + 1);
+                i = end;
+                continue;
+            }
+            out.append(c);
+        }
+
+        if (out.length() > start && out.charAt(out.length() - 1) == ';') out.setLength(out.length() - 1);
+    }
+
+    private static int checksum (ByteBuffer bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static String readString (DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new EOFException("Damaged disk cache index");
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static void writeString (DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static long getHits () {
+        return hits.sum();
+    }
+
+    public static long getMisses () {
+        return misses.sum();
+    }
+
+    public static long getEvictions () {
+        return evictions.sum();
+    }
+
+    public static long getInvalidations () {
+        return invalidations.sum();
+    }
+
+    /**
+     * Share of lookups answered from disk, from {@code 0} to {@code 1}
+     * **/
+    public static double getHitRatio () {
+        long hit = getHits();
+        long total = hit + getMisses();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Bytes the segment files take
+     * **/
+    public static long getSize () {
+        synchronized (entries) {
+            return fileBytes;
+        }
+    }
+
+    public static int getEntryCount () {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the disk cache counters in a neat format
+     * **/
+    public static String getStatistics () {
+        return "HITS=%d | MISSES=%d | HIT RATIO=%.2f | ENTRIES=%d | SIZE=%d bytes | EVICTIONS=%d | INVALIDATIONS=%d"
+                .formatted(getHits(), getMisses(), getHitRatio(), getEntryCount(), getSize(), getEvictions(), getInvalidations());
+    }
+}
@@ -0,0 +1,114 @@
+package sql.query;
+
+import common.Settings;
+import log.Log;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Progress of a dump file executed by {@link Query#fromDump(String, Consumer)}. Counts the statements handed to the
+ * executor and reads the amount of file bytes consumed so far, then logs both with their rate every
+ * {@link Settings#DUMP_PROGRESS_INTERVAL} ms.
+ * @see Query#fromDump(String)
+ * **/
+public class DumpProgress {
+
+    private final String path;
+    private final long totalBytes;
+    private final LongSupplier bytesRead;
+    private final Consumer<DumpProgress> listener;
+
+    private final long start = System.nanoTime();
+    private long lastReport = start;
+    private long statements;
+
+    DumpProgress (String path, long totalBytes, LongSupplier bytesRead, Consumer<DumpProgress> listener) {
+        this.path = path;
+        this.totalBytes = totalBytes;
+        this.bytesRead = bytesRead;
+        this.listener = listener;
+    }
+
+    /**
+     * Wraps the statements of a {@link ScriptLexer} so every statement taken from it is counted
+     * **/
+    Iterable<String> track (Iterable<String> source) {
+        return () -> new Iterator<>() {
+            private final Iterator<String> iterator = source.iterator();
+
+            @Override
+            public boolean hasNext () {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next () {
+                String statement = iterator.next();
+                statements++;
+                if (System.nanoTime() - lastReport >= Settings.DUMP_PROGRESS_INTERVAL * 1_000_000) report();
+                return statement;
+            }
+        };
+    }
+
+    /**
+     * Logs the final numbers once the dump is done
+     * **/
+    void finish () {
+        report();
+    }
+
+    public String getPath () {
+        return path;
+    }
+
+    /**
+     * Bytes read from the file so far, for compressed dumps these are compressed bytes
+     * **/
+    public long getBytesRead () {
+        return bytesRead.getAsLong();
+    }
+
+    /**
+     * Size of the file on disk
+     * **/
+    public long getTotalBytes () {
+        return totalBytes;
+    }
+
+    public long getStatements () {
+        return statements;
+    }
+
+    public double getSeconds () {
+        return (System.nanoTime() - start) * 1e-9;
+    }
+
+    public double getBytesPerSecond () {
+        return getBytesRead() / Math.max(getSeconds(), 1e-9);
+    }
+
+    public double getStatementsPerSecond () {
+        return statements / Math.max(getSeconds(), 1e-9);
+    }
+
+    /**
+     * Returns the progress in a neat format
+     * **/
+    @Override
+    public String toString () {
+        double percent = totalBytes > 0 ? getBytesRead() * 100.0 / totalBytes : 100;
+
+        return "%s: %.1f%% | %.1f of %.1f MiB | %d statements | %.1f MiB/s | %.0f statements/s"
+                .formatted(path, percent, getBytesRead() / 1048576.0, totalBytes / 1048576.0,
+                        statements, getBytesPerSecond() / 1048576.0, getStatementsPerSecond());
+    }
+
+    private void report () {
+        lastReport = System.nanoTime();
+        Log.info(toString());
+        if (listener != null) listener.accept(this);
+    }
+}
@@ -0,0 +1,122 @@
+package sql.query;
+
+import common.Settings;
+import log.Log;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Progress of a file loaded by {@link Query#bulkLoad(String, String, Consumer)}. Counts the rows sent to the server and
+ * reads the amount of file bytes consumed so far, then logs both with their rate every
+ * {@link Settings#DUMP_PROGRESS_INTERVAL} ms. The returned instance holds the final numbers.
+ * @see DumpProgress
+ * **/
+public class LoadProgress {
+
+    private final String path;
+    private final String table;
+    private final long totalBytes;
+    private final LongSupplier bytesRead;
+    private final Consumer<LoadProgress> listener;
+
+    private final long start = System.nanoTime();
+    private long lastReport = start;
+    private long end;
+    private long rows;
+    private boolean localInfile;
+
+    LoadProgress (String path, String table, long totalBytes, LongSupplier bytesRead, Consumer<LoadProgress> listener) {
+        this.path = path;
+        this.table = table;
+        this.totalBytes = totalBytes;
+        this.bytesRead = bytesRead;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds rows that reached the server and logs the progress when it is due
+     * **/
+    void add (long count) {
+        rows += count;
+        if (System.nanoTime() - lastReport >= Settings.DUMP_PROGRESS_INTERVAL * 1_000_000) report();
+    }
+
+    /**
+     * Marks the load as done with {@code LOAD DATA LOCAL INFILE}
+     * **/
+    void localInfile () {
+        localInfile = true;
+    }
+
+    /**
+     * Stops the clock and logs the final numbers
+     * **/
+    void finish () {
+        end = System.nanoTime();
+        report();
+    }
+
+    public String getPath () {
+        return path;
+    }
+
+    public String getTable () {
+        return table;
+    }
+
+    /**
+     * Bytes read from the file so far, for compressed files these are compressed bytes
+     * **/
+    public long getBytesRead () {
+        return bytesRead.getAsLong();
+    }
+
+    /**
+     * Size of the file on disk
+     * **/
+    public long getTotalBytes () {
+        return totalBytes;
+    }
+
+    public long getRows () {
+        return rows;
+    }
+
+    /**
+     * Whether the server read the file itself with {@code LOAD DATA LOCAL INFILE}
+     * **/
+    public boolean isLocalInfile () {
+        return localInfile;
+    }
+
+    public double getSeconds () {
+        return ((end == 0 ? System.nanoTime() : end) - start) * 1e-9;
+    }
+
+    public double getBytesPerSecond () {
+        return getBytesRead() / Math.max(getSeconds(), 1e-9);
+    }
+
+    public double getRowsPerSecond () {
+        return rows / Math.max(getSeconds(), 1e-9);
+    }
+
+    /**
+     * Returns the progress in a neat format
+     * **/
+    @Override
+    public String toString () {
+        double percent = totalBytes > 0 ? getBytesRead() * 100.0 / totalBytes : 100;
+
+        return "%s -> %s: %.1f%% | %.1f of %.1f MiB | %d rows | %.1f MiB/s | %.0f rows/s%s"
+                .formatted(path, table, percent, getBytesRead() / 1048576.0, totalBytes / 1048576.0,
+                        rows, getBytesPerSecond() / 1048576.0, getRowsPerSecond(), localInfile ? " | LOAD DATA" : "");
+    }
+
+    private void report () {
+        lastReport = System.nanoTime();
+        Log.info(toString());
+        if (listener != null) listener.accept(this);
+    }
+}
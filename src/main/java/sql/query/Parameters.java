@@ -0,0 +1,77 @@
+package sql.query;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Binds values to the {@code ?} placeholders of a {@link PreparedStatement} with the matching {@code setXxx} call,
+ * so the same statement (and its cached plan) can be reused for every value.
+ * @see Query#fromPreparedStatement(String, Object...)
+ * @see #nullOf(int)
+ * **/
+public class Parameters {
+
+    private Parameters(){}
+
+    /**
+     * A typed SQL {@code NULL}, for drivers that need to know the column type of a null parameter
+     * @see #nullOf(int)
+     * **/
+    public record Null(int sqlType) {}
+
+    /**
+     * Returns a {@code NULL} parameter of the given {@link Types} type. A plain Java {@code null} is bound as {@link Types#NULL}.
+     * **/
+    public static Null nullOf (int sqlType) {
+        return new Null(sqlType);
+    }
+
+    /**
+     * Binds every parameter to the statement in order, the first parameter goes to the first {@code ?}.
+     * Supported types are the boxed primitives, {@code String}, {@code byte[]}, {@code BigDecimal}, the {@code java.sql}
+     * date types, {@code Instant}, {@code LocalDateTime}, {@code LocalDate}, {@code LocalTime} and {@code null}.
+     * @throws IllegalArgumentException when a parameter has an unsupported type
+     * **/
+    public static void bind (PreparedStatement statement, Object... parameters) throws SQLException {
+        if (parameters == null) return;
+
+        for (int i = 0; i < parameters.length; i++) {
+            bind(statement, i + 1, parameters[i]);
+        }
+    }
+
+    static void bind (PreparedStatement statement, int index, Object value) throws SQLException {
+        switch (value) {
+            case null -> statement.setNull(index, Types.NULL);
+            case Null typed -> statement.setNull(index, typed.sqlType());
+            case Integer i -> statement.setInt(index, i);
+            case Long l -> statement.setLong(index, l);
+            case Double d -> statement.setDouble(index, d);
+            case Float f -> statement.setFloat(index, f);
+            case Short s -> statement.setShort(index, s);
+            case Byte b -> statement.setByte(index, b);
+            case Boolean b -> statement.setBoolean(index, b);
+            case String s -> statement.setString(index, s);
+            case byte[] bytes -> statement.setBytes(index, bytes);
+            case BigDecimal decimal -> statement.setBigDecimal(index, decimal);
+            case Timestamp timestamp -> statement.setTimestamp(index, timestamp);
+            case Date date -> statement.setDate(index, date);
+            case Time time -> statement.setTime(index, time);
+            case Instant instant -> statement.setTimestamp(index, Timestamp.from(instant));
+            case LocalDateTime dateTime -> statement.setTimestamp(index, Timestamp.valueOf(dateTime));
+            case LocalDate date -> statement.setDate(index, Date.valueOf(date));
+            case LocalTime time -> statement.setTime(index, Time.valueOf(time));
+            default -> throw new IllegalArgumentException(
+                    "Unsupported parameter type %s at index %d".formatted(value.getClass().getName(), index));
+        }
+    }
+}
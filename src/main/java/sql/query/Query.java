@@ -1,34 +1,72 @@
 package sql.query;
 
+import common.ChannelInputStream;
 import common.CrashUtil;
 import common.FileUtil;
 import log.Log;
 import org.jetbrains.annotations.Nullable;
+import sql.ConnectionException;
+import sql.DataSources;
+import sql.Dialect;
+import sql.PooledConnection;
+import sql.Route;
 import sql.SqlConnection;
+import sql.Transaction;
+import sql.export.Export;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static log.Log.info;
 import static log.Log.logSQL;
+import static common.Settings.BATCH_SIZE;
+import static common.Settings.DUMP_CHUNK_SIZE;
+import static common.Settings.FETCH_SIZE;
+import static common.Settings.SCRIPT_COMMIT_INTERVAL;
+import static common.Settings.scriptTransaction;
+import static common.Settings.batchScripts;
 import static common.Settings.logQueries;
+import static common.Settings.slowQueryLog;
 import static common.Settings.logResults;
-import static sql.SqlConnection.connection;
 
 /**
- * Holds {@code static} methods for easy and safe querying
+ * Holds {@code static} methods for easy and safe querying. A failing statement crashes the library, a connection that
+ * could not be borrowed is thrown as {@link ConnectionException} and the call can be retried.
  * @see #fromString(String)
  *
- * @see #executeExpression(String)
+ * @see #executeExpression(String, Object...)
+ * @see #fromPreparedStatement(String, Object...)
  * @see #selectOperation(PreparedStatement)
+ * @see #cursor(String, Object...)
  *
  * @see #fromResourceFile(String resourcePath)
  * @see #fromSequence(String resourcePath)
@@ -38,36 +76,174 @@ public class Query {
     private Query (){}
 
     /**
-     * Splits a SQL query to single line queries and parses them to another method. This is in line and should not be changed.
-     * @see #executeExpression(String query)
+     * Splits a SQL query to single statements with {@link ScriptLexer} and parses them to another method.
+     * Semicolons inside quotes and comments do not split the query.
+     * @see #executeExpression(String query, Object... parameters)
      * @see SqlConnection
      * @see log.Log#logSelect
      * */
     @Nullable
     public static ArrayList<String[]> fromString (String fullSql) {
 
-        String[] statements = fullSql.split(";");
+        return fromReader(new StringReader(fullSql));
+    }
+
+    /**
+     * Executes a script while it is being read, statement by statement, so the script is never fully held in memory.
+     * The reader is not closed.
+     * @see ScriptLexer
+     * @see #fromFile(String)
+     * */
+    @Nullable
+    public static ArrayList<String[]> fromReader (Reader reader) {
+
+        try {
+            return runScript(new ScriptLexer(reader, SqlConnection.getDialect()).statements());
+        } catch (UncheckedIOException e) {
+            CrashUtil.crash(e.getCause());
+        }
+
+        return null;
+    }
+
+    /**
+     * Runs every statement of a script, in a transaction when {@link common.Settings#scriptTransaction} asks for one.
+     * Joins the thread's transaction if there already is one.
+     * @see #fromString(String fullSQL)
+     * @see Transaction
+     * **/
+    private static ArrayList<String[]> runScript (Iterable<String> statements) {
+
+        if (scriptTransaction == Transaction.Scope.NONE) return executeScript(statements, null);
+
+        Transaction active = Transaction.current();
+        if (active != null) return executeScript(statements, active);
+
+        Transaction transaction = begin();
+        try (transaction) {
+            ArrayList<String[]> result = executeScript(statements, transaction);
+            transaction.commit();
+            return result;
+        } catch (SQLException e) {
+            CrashUtil.crash(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Executes the statements one by one, or batched when {@link common.Settings#batchScripts} is on.
+     * Commits the transaction every {@link common.Settings#SCRIPT_COMMIT_INTERVAL} statements when there is one.
+     * **/
+    private static ArrayList<String[]> executeScript (Iterable<String> statements, @Nullable Transaction transaction) {
+
+        if (batchScripts) return executeBatched(statements, transaction);
 
         ArrayList<String[]> result = new ArrayList<>();
+        int executed = 0;
 
-        for (String query : statements) {
-            query = query.trim();
+        try {
+            for (String query : statements) {
+                query = query.trim();
 
-            if (query.isEmpty()) continue;
+                if (query.isEmpty()) continue;
 
-            result = executeExpression(query);
+                result = executeExpression(query);
 
-            if(logResults) Log.logSelect.accept(result);
+                if(logResults) Log.logSelect.accept(result);
+
+                if (isCommitPoint(transaction, ++executed)) transaction.checkpoint();
+            }
+        } catch (SQLException e) {
+            CrashUtil.crash(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs a script on one connection and groups consecutive non-{@code SELECT} statements into batches of
+     * {@link common.Settings#BATCH_SIZE}. A {@code SELECT} first sends the pending batch, so it sees every earlier write.
+     * @see Batch
+     * @see common.Settings#batchScripts
+     * **/
+    private static ArrayList<String[]> executeBatched (Iterable<String> statements, @Nullable Transaction transaction) {
+
+        ArrayList<String[]> result = new ArrayList<>();
+        int executed = 0;
+
+        try (PooledConnection pooled = borrow(false)) {
+            Batch batch = new Batch(pooled, BATCH_SIZE);
+
+            for (String query : statements) {
+                query = query.trim();
+
+                if (query.isEmpty()) continue;
+
+                if (isSelect(query)) {
+                    batch.flush();
+                    if(logQueries && !slowQueryLog) logSQL.accept(query);
+                    result = execute(pooled, query);
+
+                    if(logResults) Log.logSelect.accept(result);
+                } else {
+                    batch.add(query);
+                }
+
+                if (isCommitPoint(transaction, ++executed)) {
+                    batch.flush();
+                    transaction.checkpoint();
+                }
+            }
+
+            batch.flush();
 
+        } catch (SQLException e) {
+            CrashUtil.crash(e);
         }
 
         return result;
     }
 
+    private static boolean isCommitPoint (@Nullable Transaction transaction, int executed) {
+        return transaction != null && SCRIPT_COMMIT_INTERVAL > 0 && executed % SCRIPT_COMMIT_INTERVAL == 0;
+    }
+
+    /**
+     * Executes the same statement once for every parameter row, as one or more prepared batches of
+     * {@link common.Settings#BATCH_SIZE} rows. Use it for bulk {@code INSERT}s instead of calling
+     * {@link #fromPreparedStatement(String, Object...)} in a loop.
+     * <div style="margin:0px">
+     *     <p>{@code Query.batch("insert into songs (id, title) values (?, ?)", List.of(new Object[]{1, "Intro"}, ...))}</p>
+     * </div>
+     * @return the update counts of every {@code executeBatch} call
+     * @see Batch
+     * **/
+    public static List<Batch.Report> batch (String query, List<Object[]> parameterRows) {
+
+        if(logQueries && !slowQueryLog) logSQL.accept(query);
+
+        try (PooledConnection pooled = borrow(false)) {
+            Batch batch = new Batch(pooled, BATCH_SIZE);
+
+            for (Object[] parameters : parameterRows) {
+                batch.add(query, parameters);
+            }
+
+            batch.flush();
+            return batch.getReports();
+
+        } catch (SQLException e) {
+            CrashUtil.crash(e);
+        }
+
+        return List.of();
+    }
+
     /**
      * Used to execute sql queries from a file in the resource folder.
      * Can't query from files that are outside the resource dir, use {@link #fromFile(String)} instead
-     * @see common.FileUtil#readResourceFile(String resourcePath)
+     * @see common.FileUtil#getResourceReader(String resourcePath)
      * @see #fromString(String fullSQL)
      * @see #fromFile(String path)
      * **/
@@ -75,7 +251,13 @@ public class Query {
 
         if (logQueries) info("Running query from " + resourcePath);
 
-        return fromString(common.FileUtil.readResourceFile(resourcePath));
+        try (BufferedReader reader = FileUtil.getResourceReader(resourcePath)) {
+            return fromReader(reader);
+        } catch (IOException e) {
+            CrashUtil.crash(e);
+        }
+
+        return null;
 
     }
 
@@ -89,13 +271,9 @@ public class Query {
 
         if (logQueries) info("Running query from " + path);
 
-        try {
-            StringBuilder builder = new StringBuilder();
-            for(String s: Files.readAllLines(Path.of(path)))
-            {
-                builder.append(s).append(" ");
-            }
-            return fromString(builder.toString());
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(path))) {
+
+            return fromReader(reader);
 
         } catch (IOException e) {
             common.CrashUtil.crash(e);
@@ -104,40 +282,237 @@ public class Query {
         return null;
     }
 
+    /**
+     * Used to execute huge SQL dump files. The file is read through a {@link FileChannel} in chunks of
+     * {@link common.Settings#DUMP_CHUNK_SIZE} bytes and every statement is executed as soon as it was read, so memory use
+     * does not depend on the size of the dump. Gzip, bzip2 and xz compressed dumps are decompressed on the fly.
+     * Progress is logged every {@link common.Settings#DUMP_PROGRESS_INTERVAL} ms.
+     * @see #fromDump(String, Consumer)
+     * @see #fromFile(String)
+     * */
+    public static ArrayList<String[]> fromDump(String path) {
+        return fromDump(path, null);
+    }
+
+    /**
+     * Same as {@link #fromDump(String)}, {@code listener} is called with the progress every time it is logged
+     * @see DumpProgress
+     * */
+    public static ArrayList<String[]> fromDump(String path, @Nullable Consumer<DumpProgress> listener) {
+
+        if (logQueries) info("Running dump from " + path);
+
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+             ChannelInputStream raw = new ChannelInputStream(channel, DUMP_CHUNK_SIZE);
+             Reader reader = new InputStreamReader(FileUtil.decompress(raw), StandardCharsets.UTF_8)) {
+
+            DumpProgress progress = new DumpProgress(path, channel.size(), raw::getPosition, listener);
+            ArrayList<String[]> result = runScript(progress.track(new ScriptLexer(reader, SqlConnection.getDialect()).statements()));
+            progress.finish();
+
+            return result;
+
+        } catch (IOException e) {
+            CrashUtil.crash(e);
+        } catch (UncheckedIOException e) {
+            CrashUtil.crash(e.getCause());
+        }
+
+        return null;
+    }
+
+    /**
+     * Loads a CSV or TSV file into an existing table, much faster than running {@code INSERT} scripts. The first line
+     * names the columns unless {@link common.Settings#bulkHeader} is off. Compressed files are decompressed on the fly
+     * and progress is logged every {@link common.Settings#DUMP_PROGRESS_INTERVAL} ms.
+     * <div style="margin:0px">
+     *     <p>{@code Query.bulkLoad("exports/songs.csv.gz", "songs").getRowsPerSecond()}</p>
+     * </div>
+     * @return the final progress with the amount of rows and the rows per second
+     * @see BulkLoader
+     * @see #bulkLoad(String, String, Consumer)
+     * */
+    public static LoadProgress bulkLoad(String path, String table) {
+        return bulkLoad(path, table, null);
+    }
+
+    /**
+     * Same as {@link #bulkLoad(String, String)}, {@code listener} is called with the progress every time it is logged
+     * @see LoadProgress
+     * */
+    public static LoadProgress bulkLoad(String path, String table, @Nullable Consumer<LoadProgress> listener) {
+
+        if (logQueries) info("Loading %s into %s".formatted(path, table));
+
+        try {
+            return BulkLoader.load(path, table, listener);
+        } catch (IOException | SQLException e) {
+            CrashUtil.crash(e);
+        } catch (UncheckedIOException e) {
+            CrashUtil.crash(e.getCause());
+        }
+
+        return null;
+    }
+
     /**
      * Used to execute multiple .txt files containing sql scripts. Imputed dir should be in {@code resources/scripts/line/}
      * All sequence line folders should contain sequence.txt that must follow this format:
      * <div style="margin:0px">
      *     <p>{@code <\Script1\>.txt, <\Script2\>.txt...}</p>
      * </div>
-     * Files can be named anything, but they must be a .txt file.
+     * Files can be named anything, but they must be a .txt file. Every line is a stage, scripts on the same line are
+     * independent of each other and may run at the same time with {@link #fromSequenceParallel(String)}. This method
+     * runs all of them one after another.
      * @see #fromResourceFile(String resourcePath)
+     * @see #fromSequenceParallel(String)
      * **/
     public static ArrayList<ArrayList<String[]>> fromSequence (String sequenceFolder){
 
+        var sequence = readSequence(sequenceFolder).stream()
+                .flatMap(List::stream)
+                .toList();
+
+        if (scriptTransaction == Transaction.Scope.SEQUENCE && Transaction.current() == null) {
+            Transaction transaction = begin();
+            try (transaction) {
+                ArrayList<ArrayList<String[]>> result = runSequence(sequenceFolder, sequence);
+                transaction.commit();
+                return result;
+            } catch (SQLException e) {
+                CrashUtil.crash(e);
+            }
+        }
+
+        return runSequence(sequenceFolder, sequence);
+
+    }
+
+    /**
+     * Same as {@link #fromSequence(String)}, but the scripts of one stage (one line of sequence.txt) run at the same time,
+     * each on its own virtual thread and pooled connection. A stage only starts once every script of the previous stage
+     * is done. The scripts run on the route selected in {@link sql.DataSources}, at most as many at once as its pool holds
+     * connections.
+     * <div style="margin:0px">
+     *     <p>{@code createTables.txt}</p>
+     *     <p>{@code loadSongs.txt, loadArtists.txt, loadAlbums.txt}</p>
+     *     <p>{@code createIndexes.txt}</p>
+     * </div>
+     * Results are returned in the order the scripts are listed. {@link Transaction.Scope#SEQUENCE} can not span several
+     * connections, so every script runs in its own transaction instead.
+     * @see #fromSequence(String)
+     * **/
+    public static ArrayList<ArrayList<String[]>> fromSequenceParallel (String sequenceFolder){
+
+        List<List<String>> stages = readSequence(sequenceFolder);
+
+        if (scriptTransaction == Transaction.Scope.SEQUENCE) {
+            Log.warn("Parallel sequences run every script in its own transaction");
+        }
+
+        Route route = DataSources.current();
+        int connections;
+        try {
+            connections = SqlConnection.getPool(route, false).getMaxSize();
+        } catch (SQLException e) {
+            throw new ConnectionException(e);
+        }
+
+        ArrayList<ArrayList<String[]>> results = new ArrayList<>();
+        Semaphore running = new Semaphore(Math.max(1, connections));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            for (int i = 0; i < stages.size(); i++) {
+                List<String> stage = stages.get(i);
+
+                if (logQueries) info("Running stage %d of %s with %d scripts".formatted(i + 1, sequenceFolder, stage.size()));
+
+                List<Future<ArrayList<String[]>>> scripts = stage.stream()
+                        .map(script -> executor.submit(() -> runLimited(running, route, sequenceFolder + File.separator + script)))
+                        .toList();
+
+                for (Future<ArrayList<String[]>> script : scripts) {
+                    results.add(await(script));
+                }
+            }
+        }
+
+        return results;
+
+    }
+
+    /**
+     * Reads sequence.txt into stages, every line is a stage of comma separated .txt scripts
+     * **/
+    private static List<List<String>> readSequence (String sequenceFolder) {
+
         String sequenceContent = common.FileUtil.readResourceFile(
                 sequenceFolder + File.separator + "sequence.txt");
 
-        var sequence = Arrays.stream(sequenceContent.split("\\R"))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
+        return Arrays.stream(sequenceContent.split("\\R"))
+                .map(line -> Arrays.stream(line.split(","))
+                        .map(String::trim)
+                        .filter(script -> script.endsWith(".txt"))
+                        .toList())
+                .filter(stage -> !stage.isEmpty())
                 .toList();
+    }
+
+    private static ArrayList<ArrayList<String[]>> runSequence (String sequenceFolder, List<String> sequence) {
 
         ArrayList<ArrayList<String[]>> results = new ArrayList<>();
 
         for(String script: sequence){
-            if(!script.endsWith(".txt")) continue;
-            String sql = FileUtil.readResourceFile(sequenceFolder + File.separator + script);
-            results.add(fromString(sql));
+            results.add(fromResourceFile(sequenceFolder + File.separator + script));
         }
 
         return results;
 
     }
 
-    public static ArrayList<String[]> fromPreparedStatement(String preparedStatement){
+    /**
+     * Runs one script of a parallel stage on the caller's route, the route is bound to the thread that selected it
+     * **/
+    private static ArrayList<String[]> runLimited (Semaphore running, @Nullable Route route, String resourcePath) throws InterruptedException {
+        running.acquire();
+        DataSources.Scope scope = DataSources.use(route);
+        try {
+            return fromResourceFile(resourcePath);
+        } finally {
+            scope.close();
+            running.release();
+        }
+    }
+
+    /**
+     * Waits for a script of a parallel stage, a failed script already crashed the library so its error is rethrown
+     * **/
+    private static <T> T await (Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CrashUtil.crash(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            CrashUtil.crash(e);
+        }
+        return null;
+    }
+
+    /**
+     * Executes a single statement with {@code ?} placeholders and binds the parameters to them in order.
+     * Values are never concatenated into the SQL, so every call with the same SQL reuses one cached statement.
+     * <div style="margin:0px">
+     *     <p>{@code Query.fromPreparedStatement("select * from songs where id = ? and title = ?", 7, "Intro")}</p>
+     * </div>
+     * @see Parameters#bind(PreparedStatement, Object...)
+     * @see sql.StatementCache
+     * **/
+    public static ArrayList<String[]> fromPreparedStatement(String preparedStatement, Object... parameters){
 
-        var result = executeExpression(preparedStatement);
+        var result = executeExpression(preparedStatement, parameters);
 
         if(logResults) Log.logSelect.accept(result);
 
@@ -147,24 +522,190 @@ public class Query {
 
 
     /**
-     * Used to connect to the DB and decide which operation should be executed. Either {@code selectOperation} or {@code executeUpdate}.
+     * Runs a single statement on a virtual thread and returns right away. Works like
+     * {@link #fromPreparedStatement(String, Object...)}, but failures complete the future instead of crashing the library.
+     * A cached {@code SELECT} returns a completed future without waiting for a slot or a connection.
+     * <div style="margin:0px">
+     *     <p>{@code var songs = Query.async("select * from songs where id = ?", 7);}</p>
+     *     <p>{@code var artists = Query.async("select * from artists where id = ?", 3);}</p>
+     *     <p>{@code CompletableFuture.allOf(songs, artists).join();}</p>
+     * </div>
+     * @see QueryFuture
+     * @see common.Settings#ASYNC_MAX_CONCURRENCY
+     * **/
+    public static QueryFuture<ArrayList<String[]>> async (String query, Object... parameters) {
+        return async(null, query, parameters);
+    }
+
+    /**
+     * Same as {@link #async(String, Object...)}, the server stops the statement after {@code timeout}, rounded up to
+     * whole seconds. {@code null} or zero waits forever.
+     * @see java.sql.Statement#setQueryTimeout(int)
+     * **/
+    public static QueryFuture<ArrayList<String[]>> async (@Nullable Duration timeout, String query, Object... parameters) {
+
+        if(logQueries && !slowQueryLog) logSQL.accept(query);
+
+        boolean select = isSelect(query);
+        boolean cached = select && ResultCache.applies(parameters);
+
+        if (cached) {
+            ArrayList<String[]> result = lookup(query, parameters);
+            if (result != null) {
+                if(logResults) Log.logSelect.accept(result);
+                return QueryFuture.completed(result);
+            }
+        }
+
+        return QueryFuture.submit(timeout, select, (pooled, future) -> {
+            ArrayList<String[]> result = executeStatement(pooled, future, query, cached, parameters);
+
+            if(logResults) Log.logSelect.accept(result);
+
+            return result;
+        });
+    }
+
+    /**
+     * Opens a lazy cursor over a {@code SELECT}. Rows are fetched {@link common.Settings#FETCH_SIZE} at a time, or one by
+     * one on MySQL without {@code useCursorFetch=true}, so the result can be bigger than the heap. The cursor holds a pooled connection and must be closed.
+     * <div style="margin:0px">
+     *     <p>{@code try (Cursor cursor = Query.cursor("select * from songs where year > ?", 2000)) {...}}</p>
+     * </div>
+     * @see Cursor
+     * @see #stream(String, Object...)
+     * **/
+    public static Cursor cursor (String query, Object... parameters) {
+
+        if(logQueries && !slowQueryLog) logSQL.accept(query);
+
+        PooledConnection pooled = borrow(true);
+        PreparedStatement statement = null;
+
+        QueryMetrics.Timer timer = QueryMetrics.start(query, parameters);
+
+        try {
+            statement = pooled.prepareStatement(query);
+            Parameters.bind(statement, parameters);
+            timer.prepared();
+
+            return new Cursor(pooled, query, statement, fetchSize(pooled), timer);
+
+        } catch (SQLException | RuntimeException e) {
+            if (statement != null) pooled.discardStatement(statement);
+            pooled.close();
+            timer.fail();
+            CrashUtil.crash(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Same as {@link #cursor(String, Object...)} but as a {@link Stream} of rows. The stream must be closed, use it in a
+     * try-with-resources block. Closing it releases the result set, statement and connection.
+     * **/
+    public static Stream<String[]> stream (String query, Object... parameters) {
+        Cursor cursor = cursor(query, parameters);
+
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * Calls {@code action} for every row of a {@code SELECT} while it is being read, without keeping the rows.
+     * @see #cursor(String, Object...)
+     * **/
+    public static void forEachRow (String query, Consumer<String[]> action, Object... parameters) {
+        try (Cursor cursor = cursor(query, parameters)) {
+            cursor.forEachRemaining(action);
+        }
+    }
+
+    /**
+     * Executes a {@code SELECT} and keeps the result in typed primitive columns instead of {@code String} rows.
+     * Much cheaper than {@link #fromPreparedStatement(String, Object...)} for numeric results.
+     * @see ColumnarResult
+     * @see Result#extractColumn(ColumnarResult, int)
+     * **/
+    public static ColumnarResult selectColumnar (String query, Object... parameters) {
+        try {
+            ColumnarResult result = ColumnarResult.from(cursor(query, parameters));
+
+            if(logResults) Log.logSelect.accept(result.toList());
+
+            return result;
+        } catch (SQLException e) {
+            CrashUtil.crash(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Streams the result of a {@code SELECT} into a CSV, JSON Lines or columnar file while it is being read. The format
+     * and compression come from the file name, like {@code exports/songs.jsonl.gz}.
+     * <div style="margin:0px">
+     *     <p>{@code Query.export("exports/songs.sqlc", "select * from songs where year > ?", 2000).getRowsPerSecond()}</p>
+     * </div>
+     * @see Export
+     * @see sql.export.ColumnarReader
+     * **/
+    public static Export.Report export (String path, String query, Object... parameters) {
+
+        if (logQueries) info("Exporting to " + path);
+
+        Cursor cursor = cursor(query, parameters);
+        if (cursor == null) return null;
+
+        try {
+            return Export.to(cursor, path);
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            CrashUtil.crash(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Connector/J ignores a positive fetch size unless the url sets {@code useCursorFetch=true} and buffers the whole result,
+     * {@link Integer#MIN_VALUE} makes it stream row by row instead. The MariaDB driver honors the fetch size as is.
+     * **/
+    private static int fetchSize (PooledConnection pooled) throws SQLException {
+        if (pooled.getDialect() != Dialect.MYSQL) return Math.max(0, FETCH_SIZE);
+
+        String url = pooled.getConnection().getMetaData().getURL().toLowerCase(Locale.ROOT);
+        if (url.startsWith("jdbc:mariadb:") || url.contains("usecursorfetch=true")) return Math.max(0, FETCH_SIZE);
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Used to borrow a connection from the pool, bind the parameters and decide which operation should be executed. Either {@code selectOperation} or {@code executeUpdate}.
+     * A {@code SELECT} borrows for a read, so it may run on a replica of the route selected in {@link sql.DataSources}.
+     * A cached {@code SELECT} is answered before a connection is borrowed.
+     * The connection is returned to the pool once the statement is done, the statement goes back to the connection's cache.
      * The select operation should be used only for select type operations.
      * The execute update method for anything else.
      * @see #fromString(String fullSQL)
      * @see #selectOperation(PreparedStatement statement)
      * @see PreparedStatement
      * **/
-    private static ArrayList<String[]> executeExpression (String query) {
+    private static ArrayList<String[]> executeExpression (String query, Object... parameters) {
 
-        if(logQueries) logSQL.accept(query);
+        if(logQueries && !slowQueryLog) logSQL.accept(query);
 
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        boolean select = isSelect(query);
+        boolean cached = select && ResultCache.applies(parameters);
 
-            if (query.toLowerCase().startsWith("select")) {
-                return selectOperation(statement);
-            } else {
-                statement.executeUpdate();
-            }
+        if (cached) {
+            ArrayList<String[]> result = lookup(query, parameters);
+            if (result != null) return result;
+        }
+
+        try (PooledConnection pooled = borrow(select)) {
+
+            return executeStatement(pooled, null, query, cached, parameters);
 
         } catch (SQLException e) {
             CrashUtil.crash(e);
@@ -174,9 +715,132 @@ public class Query {
 
     }
 
+    /**
+     * Borrows a connection for a query. Failing to get one is no reason to crash, nothing ran yet, so it is thrown to the
+     * caller as {@link ConnectionException} to retry.
+     * @see SqlConnection#borrow(boolean)
+     * **/
+    private static PooledConnection borrow (boolean read) {
+        try {
+            return SqlConnection.borrow(read);
+        } catch (SQLException e) {
+            throw new ConnectionException(e);
+        }
+    }
+
+    /**
+     * Begins the transaction of a script or sequence, failures are thrown like in {@link #borrow(boolean)}
+     * **/
+    private static Transaction begin () {
+        try {
+            return Transaction.begin();
+        } catch (SQLException e) {
+            throw new ConnectionException(e);
+        }
+    }
+
+    /**
+     * Executes a statement on an already borrowed connection, using the connection's statement cache
+     * @see #executeExpression(String query, Object... parameters)
+     * **/
+    private static ArrayList<String[]> execute (PooledConnection pooled, String query, Object... parameters) throws SQLException {
+        return execute(pooled, null, query, parameters);
+    }
+
+    /**
+     * A cacheable {@code SELECT} is answered from the {@link ResultCache} first, then from the {@link DiskCache}, and only
+     * then from the database. Its result is stored in both.
+     * @param future async call to apply the timeout and cancellation of, {@code null} for blocking calls
+     * @see QueryFuture#enter(PreparedStatement)
+     * **/
+    private static ArrayList<String[]> execute (PooledConnection pooled, @Nullable QueryFuture<?> future, String query, Object... parameters) throws SQLException {
+
+        boolean cached = isSelect(query) && ResultCache.applies(parameters);
+
+        if (cached) {
+            ArrayList<String[]> result = lookup(query, parameters);
+            if (result != null) return result;
+        }
+
+        return executeStatement(pooled, future, query, cached, parameters);
+    }
+
+    /**
+     * Looks a {@code SELECT} up in the {@link ResultCache} and then in the {@link DiskCache}, a disk hit is kept in memory
+     * too. Returns {@code null} on a miss.
+     * **/
+    private static ArrayList<String[]> lookup (String query, Object[] parameters) {
+        long generation = ResultCache.generation();
+
+        ArrayList<String[]> result = ResultCache.get(query, parameters);
+        if (result != null) return result;
+
+        result = DiskCache.get(query, parameters);
+        if (result != null) ResultCache.put(query, parameters, result, generation);
+
+        return result;
+    }
+
+    /**
+     * Runs the statement on the database after the caches missed
+     * @param cached whether the result is stored in the caches
+     * **/
+    private static ArrayList<String[]> executeStatement (PooledConnection pooled, @Nullable QueryFuture<?> future, String query,
+                                                         boolean cached, Object... parameters) throws SQLException {
+
+        boolean select = isSelect(query);
+        long generation = cached ? ResultCache.generation() : 0;
+
+        QueryMetrics.Timer timer = QueryMetrics.start(query, parameters);
+        PreparedStatement statement;
+
+        try {
+            statement = pooled.prepareStatement(query);
+        } catch (SQLException | RuntimeException e) {
+            timer.fail();
+            throw e;
+        }
+
+        ArrayList<String[]> result = null;
+
+        try {
+            Parameters.bind(statement, parameters);
+            timer.prepared();
+
+            if (future != null) future.enter(statement);
+            try {
+                if (select) {
+                    result = selectOperation(statement, timer);
+                } else {
+                    timer.updated(statement.executeUpdate());
+                    ResultCache.invalidate(query);
+                }
+            } finally {
+                if (future != null) future.leave(statement);
+            }
+        } catch (SQLException | RuntimeException e) {
+            pooled.discardStatement(statement);
+            timer.fail();
+            throw e;
+        }
+
+        pooled.releaseStatement(query, statement);
+        timer.finish(pooled);
+
+        if (cached) {
+            ResultCache.put(query, parameters, result, generation);
+            DiskCache.put(query, parameters, result, generation);
+        }
+        return result;
+    }
+
+    private static boolean isSelect (String query) {
+        return query.toLowerCase().startsWith("select");
+    }
+
     private static ArrayList<String[]> executeExpression (PreparedStatement statement) {
 
-        if(logQueries) logSQL.accept(statement.toString());
+        if(logQueries && !slowQueryLog) logSQL.accept(statement.toString());
 
         try {
             if (statement.toString().toLowerCase().startsWith("select")) {
@@ -193,13 +857,24 @@ public class Query {
     /**
      * This method is used to obtain all values from a table and puts them into a {@code ArrayList} for each row. All value
      * are saved as {@code String}
-     * @see #executeExpression(String query)
+     * @see #executeExpression(String query, Object... parameters)
      * @see ResultSet
      * **/
     private static ArrayList<String[]> selectOperation (PreparedStatement statement) throws SQLException {
+        return selectOperation(statement, QueryMetrics.Timer.NONE);
+    }
+
+    /**
+     * Same as {@link #selectOperation(PreparedStatement)}, reports the execute and fetch phases and the rows and bytes read
+     * @see QueryMetrics
+     * **/
+    private static ArrayList<String[]> selectOperation (PreparedStatement statement, QueryMetrics.Timer timer) throws SQLException {
         var result = new ArrayList<String[]>();
+        long bytes = 0;
 
         try (ResultSet resultSet = statement.executeQuery()) {
+            timer.executed();
+
             ResultSetMetaData metaData = resultSet.getMetaData();
             int columnCount = metaData.getColumnCount();
 
@@ -217,10 +892,14 @@ public class Query {
                 for (int i = 1; i <= columnCount; i++) {
                     Object value = resultSet.getObject(i);
                     row[i-1] = (value != null) ? value.toString() : null;
+                    if (value != null) bytes += row[i-1].length();
                 }
                 result.add(row);
             }
         }
+
+        timer.rows(result.size() - 2);
+        timer.bytes(bytes);
         return result;
     }
 
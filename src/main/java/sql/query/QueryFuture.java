@@ -0,0 +1,182 @@
+package sql.query;
+
+import common.CrashUtil;
+import sql.ConnectionPool;
+import sql.DataSource;
+import sql.DataSources;
+import sql.PooledConnection;
+import sql.Route;
+import sql.SqlConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static common.Settings.ASYNC_MAX_CONCURRENCY;
+
+/**
+ * Result of {@link Query#async(String, Object...)}. The statement runs on a virtual thread with its own pooled
+ * connection, at most {@link common.Settings#ASYNC_MAX_CONCURRENCY} per connection pool at once, the rest wait for a
+ * slot without holding a connection.
+ * <p>
+ * {@link #cancel(boolean)} takes the call out of the queue, or calls {@link java.sql.Statement#cancel()} when the statement
+ * already runs on the server. The timeout is set with {@link java.sql.Statement#setQueryTimeout(int)}, so the server stops
+ * the statement and the future fails with a {@link SQLTimeoutException}.
+ * <p>
+ * Async calls run on the route the calling thread selected in {@link DataSources}, but never join a
+ * {@link sql.Transaction} of the calling thread. Failures do not crash the library, they are logged and complete the
+ * future exceptionally.
+ * @see Query#async(Duration, String, Object...)
+ * **/
+public final class QueryFuture<T> extends CompletableFuture<T> {
+
+    private static final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sql-async-", 0).factory());
+
+    /**
+     * Slots per {@link DataSource}, or under {@link #DEFAULT_POOL} for {@link SqlConnection}. Its pool is replaced on every
+     * {@link SqlConnection#close()}, keying on the pool itself would keep a semaphore per replaced pool forever.
+     * **/
+    private static final Map<Object, Semaphore> slots = new ConcurrentHashMap<>();
+    private static final Object DEFAULT_POOL = new Object();
+
+    /**
+     * Waiting for a slot is polled so a cancelled call never needs an interrupt, which would close the connection's
+     * socket on a virtual thread
+     * **/
+    private static final long POLL_INTERVAL = 50;
+
+    @FunctionalInterface
+    interface Call<T> {
+        T run (PooledConnection pooled, QueryFuture<T> future) throws SQLException;
+    }
+
+    private final int timeout;
+    private final Route route;
+    private final boolean read;
+    private PreparedStatement running;
+
+    private QueryFuture (Duration timeout, Route route, boolean read) {
+        this.route = route;
+        this.read = read;
+        this.timeout = timeout == null || timeout.isZero() || timeout.isNegative()
+                ? 0
+                : (int) Math.min(Integer.MAX_VALUE, (timeout.toMillis() + 999) / 1000);
+    }
+
+    /**
+     * @param read whether the call only reads, so it may run on a replica of the caller's route
+     * @see DataSources#current()
+     * **/
+    static <T> QueryFuture<T> submit (Duration timeout, boolean read, Call<T> call) {
+        QueryFuture<T> future = new QueryFuture<>(timeout, DataSources.current(), read);
+        executor.execute(() -> future.run(call));
+        return future;
+    }
+
+    /**
+     * A call answered without the database, for example from the {@link ResultCache}
+     * **/
+    static <T> QueryFuture<T> completed (T value) {
+        QueryFuture<T> future = new QueryFuture<>(null, DataSources.current(), true);
+        future.complete(value);
+        return future;
+    }
+
+    @Override
+    public boolean cancel (boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+        if (cancelled) {
+            synchronized (this) {
+                if (running != null) {
+                    try {
+                        running.cancel();
+                    } catch (SQLException e) {
+                        CrashUtil.catchError(e);
+                    }
+                }
+            }
+        }
+
+        return cancelled;
+    }
+
+    /**
+     * Waits for a slot of the data source the call goes to, then borrows through the {@link Route} so a failing replica
+     * falls back to the primary like a blocking read does
+     * @see Route#borrow(DataSource)
+     * **/
+    private void run (Call<T> call) {
+        DataSource target = route == null ? null : route.target(read);
+        ConnectionPool pool = null;
+        if (target == null) {
+            try {
+                pool = SqlConnection.getPool();
+            } catch (SQLException e) {
+                completeExceptionally(e);
+                return;
+            }
+        }
+
+        int size = target == null ? pool.getMaxSize() : target.getMaxSize();
+        Semaphore slot = slots.computeIfAbsent(target == null ? DEFAULT_POOL : target, key -> new Semaphore(Math.max(1,
+                ASYNC_MAX_CONCURRENCY > 0 ? ASYNC_MAX_CONCURRENCY : size), true));
+
+        try {
+            while (!slot.tryAcquire(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (isDone()) return;
+            }
+        } catch (InterruptedException e) {
+            completeExceptionally(e);
+            return;
+        }
+
+        //Selects the caller's route on this thread too, the result cache keys on it
+        DataSources.Scope scope = DataSources.use(route);
+
+        try (PooledConnection pooled = target == null ? pool.borrow() : route.borrow(target)) {
+            if (!isDone()) complete(call.run(pooled, this));
+        } catch (SQLException | RuntimeException e) {
+            if (!isCancelled()) CrashUtil.catchError(e);
+            completeExceptionally(e);
+        } finally {
+            scope.close();
+            slot.release();
+        }
+    }
+
+    /**
+     * Called by {@link Query} right before the statement is sent, applies the timeout and makes it cancellable
+     * @throws SQLException when the call was cancelled in the meantime
+     * **/
+    synchronized void enter (PreparedStatement statement) throws SQLException {
+        if (isCancelled()) throw new SQLException("Query was cancelled");
+
+        if (timeout > 0) statement.setQueryTimeout(timeout);
+        running = statement;
+    }
+
+    /**
+     * Called once the statement is done, before it goes back to the statement cache
+     * **/
+    synchronized void leave (PreparedStatement statement) {
+        running = null;
+
+        if (timeout > 0) {
+            try {
+                statement.setQueryTimeout(0);
+            } catch (SQLException e) {
+                CrashUtil.catchError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package sql.query;
+
+import log.Log;
+import sql.PooledConnection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static common.Settings.METRICS_MAX_STATEMENTS;
+import static common.Settings.METRICS_REPORT_SIZE;
+import static common.Settings.queryMetrics;
+import static common.Settings.slowQueryLog;
+
+/**
+ * Collects timings of every statement run through {@link Query}, grouped by normalized SQL: literals become {@code ?}
+ * and whitespace is collapsed, so {@code where id = 7} and {@code where id = 8} count as one statement.
+ * Every statement records the prepare time (cache checkout and binding), the execute time, the fetch time of the rows,
+ * the rows returned or affected and the bytes of the values read as {@code String}s.
+ * <p>
+ * Recording only touches {@link LongAdder}s and {@link LatencyHistogram}s, so it is cheap enough to leave on.
+ * At most {@link common.Settings#METRICS_MAX_STATEMENTS} statements are tracked, the rest are counted under {@link #OTHER}.
+ * @see common.Settings#queryMetrics
+ * @see sql.Quit#end(long, long)
+ * **/
+public final class QueryMetrics {
+
+    /**
+     * Key of every statement past {@link common.Settings#METRICS_MAX_STATEMENTS}
+     * **/
+    public static final String OTHER = "<other statements>";
+
+    private static final Map<String, Statistics> statements = new ConcurrentHashMap<>();
+    private static final Map<String, String> normalized = new ConcurrentHashMap<>();
+
+    private QueryMetrics () {
+    }
+
+    /**
+     * Metrics of one normalized statement. Values are live, read them again for newer numbers.
+     * **/
+    public static final class Statistics {
+
+        private final String sql;
+
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder prepareTime = new LongAdder();
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LatencyHistogram fetch = new LatencyHistogram();
+
+        private Statistics (String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql () {
+            return sql;
+        }
+
+        public long getCount () {
+            return latency.getCount();
+        }
+
+        public long getErrors () {
+            return errors.sum();
+        }
+
+        /**
+         * Rows returned by {@code SELECT}s plus rows affected by everything else
+         * **/
+        public long getRows () {
+            return rows.sum();
+        }
+
+        /**
+         * Approximate size of the values read as {@code String}s, one byte per char
+         * **/
+        public long getBytes () {
+            return bytes.sum();
+        }
+
+        /**
+         * Total time in ns spent checking out the statement and binding parameters
+         * **/
+        public long getPrepareTime () {
+            return prepareTime.sum();
+        }
+
+        /**
+         * Whole statement, from checkout to the last row. For cursors only the time spent fetching counts, not the
+         * time between rows.
+         * **/
+        public LatencyHistogram getLatency () {
+            return latency;
+        }
+
+        /**
+         * {@code executeQuery}, {@code executeUpdate} or {@code executeBatch} alone
+         * **/
+        public LatencyHistogram getExecute () {
+            return execute;
+        }
+
+        /**
+         * Reading the rows of a {@code SELECT}
+         * **/
+        public LatencyHistogram getFetch () {
+            return fetch;
+        }
+
+        @Override
+        public String toString () {
+            return "COUNT=%d | ERRORS=%d | ROWS=%d | BYTES=%d | P50=%.3fms | P99=%.3fms | MAX=%.3fms | TOTAL=%.3fms | %s"
+                    .formatted(getCount(), getErrors(), getRows(), getBytes(),
+                            latency.getPercentile(50) * 1e-6, latency.getPercentile(99) * 1e-6,
+                            latency.getMax() * 1e-6, latency.getTotal() * 1e-6, sql);
+        }
+    }
+
+    /**
+     * Measures one statement. Obtained with {@link #start(String, Object[])}, which returns {@link #NONE} when metrics
+     * and the slow query log are off, so callers never check the settings themselves. Not thread safe, one timer per
+     * statement execution.
+     * @see SlowQueryLog
+     * **/
+    static final class Timer {
+
+        static final Timer NONE = new Timer(null, null);
+
+        private final String sql;
+        private final Object[] parameters;
+        private final long start;
+        private long prepared;
+        private long executed;
+        private long fetchTime;
+        private boolean streamed;
+        private boolean updated;
+        private long rows;
+        private long bytes;
+
+        private Timer (String sql, Object[] parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.start = sql == null ? 0 : System.nanoTime();
+        }
+
+        void prepared () {
+            if (this != NONE) prepared = System.nanoTime();
+        }
+
+        void executed () {
+            if (this != NONE) executed = System.nanoTime();
+        }
+
+        /**
+         * Marks the end of an update, which has no rows to fetch
+         * **/
+        void updated (long count) {
+            if (this == NONE) return;
+            executed = System.nanoTime();
+            rows += count;
+            updated = true;
+        }
+
+        /**
+         * Adds time spent reading rows, for cursors that fetch between other work
+         * **/
+        void fetched (long nanos) {
+            if (this == NONE) return;
+            fetchTime += nanos;
+            streamed = true;
+        }
+
+        void rows (long count) {
+            if (this != NONE) rows += count;
+        }
+
+        void bytes (long count) {
+            if (this != NONE) bytes += count;
+        }
+
+        /**
+         * Records the statement. Fetch time is the time since {@link #executed()} unless it was added with
+         * {@link #fetched(long)}. Statements without a connection are never explained.
+         * **/
+        void finish (PooledConnection pooled) {
+            if (this != NONE) QueryMetrics.record(this, false, pooled);
+        }
+
+        void finish () {
+            finish(null);
+        }
+
+        void fail () {
+            if (this != NONE) QueryMetrics.record(this, true, null);
+        }
+    }
+
+    static Timer start (String sql) {
+        return start(sql, null);
+    }
+
+    /**
+     * @param parameters kept for the slow query log, not copied
+     * **/
+    static Timer start (String sql, Object[] parameters) {
+        return queryMetrics || slowQueryLog ? new Timer(sql, parameters) : Timer.NONE;
+    }
+
+    private static void record (Timer timer, boolean failed, PooledConnection pooled) {
+        long end = System.nanoTime();
+        long prepared = timer.prepared == 0 ? timer.start : timer.prepared;
+        long executed = timer.executed == 0 ? prepared : timer.executed;
+
+        //Cursors only count the time spent reading, not the time the caller spent between rows
+        long duration = timer.streamed ? executed - timer.start + timer.fetchTime : end - timer.start;
+
+        if (slowQueryLog && !failed && SlowQueryLog.isSlow(duration)) {
+            SlowQueryLog.write(timer.sql, timer.parameters, duration, timer.rows, pooled);
+        }
+
+        if (!queryMetrics) return;
+
+        Statistics statistics = statistics(normalize(timer.sql));
+
+        if (failed) statistics.errors.increment();
+        statistics.rows.add(timer.rows);
+        statistics.bytes.add(timer.bytes);
+        statistics.prepareTime.add(prepared - timer.start);
+
+        statistics.latency.record(duration);
+        if (timer.executed != 0) {
+            statistics.execute.record(executed - prepared);
+            if (!timer.updated) statistics.fetch.record(timer.streamed ? timer.fetchTime : end - executed);
+        }
+    }
+
+    private static Statistics statistics (String sql) {
+        Statistics statistics = statements.get(sql);
+        if (statistics != null) return statistics;
+
+        if (statements.size() >= Math.max(1, METRICS_MAX_STATEMENTS)) sql = OTHER;
+        return statements.computeIfAbsent(sql, Statistics::new);
+    }
+
+    /**
+     * Metrics of a statement, {@code null} if it never ran. The SQL is normalized first, so any literal values match.
+     * **/
+    public static Statistics get (String sql) {
+        return statements.get(normalize(sql));
+    }
+
+    /**
+     * Every tracked statement, the most expensive in total first
+     * **/
+    public static List<Statistics> getAll () {
+        List<Statistics> all = new ArrayList<>(statements.values());
+        all.sort(Comparator.comparingLong((Statistics s) -> s.getLatency().getTotal()).reversed());
+        return all;
+    }
+
+    public static void reset () {
+        statements.clear();
+    }
+
+    /**
+     * Logs the {@link common.Settings#METRICS_REPORT_SIZE} most expensive statements
+     * @see sql.Quit#end(long, long)
+     * **/
+    public static void report () {
+        List<Statistics> all = getAll();
+        if (all.isEmpty()) return;
+
+        Log.info("Query metrics, %d statements, most expensive first:".formatted(all.size()));
+        for (Statistics statistics : all.subList(0, Math.min(all.size(), Math.max(0, METRICS_REPORT_SIZE)))) {
+            Log.info(statistics.toString());
+        }
+    }
+
+    /**
+     * Replaces string and number literals with {@code ?} and collapses whitespace and comments into one space.
+     * Results are cached for the same texts as the statements, so repeated statements are normalized once.
+     * **/
+    static String normalize (String sql) {
+        String cached = normalized.get(sql);
+        if (cached != null) return cached;
+
+        String result = normalizeUncached(sql);
+        if (normalized.size() < 4 * Math.max(1, METRICS_MAX_STATEMENTS)) normalized.put(sql, result);
+        return result;
+    }
+
+    private static String normalizeUncached (String sql) {
+        StringBuilder builder = new StringBuilder(sql.length());
+        int length = sql.length();
+        boolean space = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') i++;
+                space = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                space = true;
+                continue;
+            }
+
+            if (space && !builder.isEmpty()) builder.append(' ');
+            space = false;
+
+            if (c == '\'') {
+                i = skipQuoted(sql, i, c);
+                builder.append('?');
+                continue;
+            }
+            if (c == '"' || c == '`') {
+                //Quoted identifiers stay, they name different columns and tables
+                int end = skipQuoted(sql, i, c);
+                builder.append(sql, i, end + 1);
+                i = end;
+                continue;
+            }
+            if (Character.isDigit(c) && !partOfWord(builder)) {
+                while (i + 1 < length && (Character.isLetterOrDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) i++;
+                builder.append('?');
+                continue;
+            }
+
+            builder.append(c);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Index of the closing quote, doubled quotes and backslash escapes stay inside
+     * **/
+    static int skipQuoted (String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return sql.length() - 1;
+    }
+
+    private static boolean partOfWord (StringBuilder builder) {
+        if (builder.isEmpty()) return false;
+        char last = builder.charAt(builder.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '`';
+    }
+}
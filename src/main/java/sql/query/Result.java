@@ -34,6 +34,56 @@ public class Result {
         return result.toArray(new String[0][]);
     }
 
+    /**
+     * Returns a single column of a columnar result. This is O(1) and does not copy anything.
+     * @see #extractColumns(ColumnarResult input, int[] columns)
+     * **/
+    public static ColumnarResult.Column extractColumn (ColumnarResult input, int column){
+        return input.getColumn(column);
+    }
+
+    /**
+     * Returns multiple columns of a columnar result without copying them.
+     * @see #extractColumn(ColumnarResult input, int column)
+     * **/
+    public static ColumnarResult.Column[] extractColumns (ColumnarResult input, int[] columns){
+        ColumnarResult.Column[] result = new ColumnarResult.Column[columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = input.getColumn(columns[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a single column of a binary result, decoding only that column.
+     * @see #extractColumns(BinaryResult input, int[] columns)
+     * **/
+    public static String[] extractColumn (BinaryResult input, int column){
+        String[] result = new String[input.getRowCount()];
+
+        for (int row = 0; row < result.length; row++) {
+            result[row] = input.getString(row, column);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns multiple columns of a binary result.
+     * @see #extractColumn(BinaryResult input, int column)
+     * **/
+    public static String[][] extractColumns (BinaryResult input, int[] columns){
+        String[][] result = new String[columns.length][];
+
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = extractColumn(input, columns[i]);
+        }
+
+        return result;
+    }
+
     public static String[] getRow (ArrayList<String[]> input, int column){
         return input.get(column);
     }
@@ -0,0 +1,285 @@
+package sql.query;
+
+import sql.DataSources;
+import sql.Route;
+import sql.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static common.Settings.RESULT_CACHE_SIZE;
+import static common.Settings.RESULT_CACHE_TTL;
+import static common.Settings.diskCache;
+import static common.Settings.resultCache;
+
+/**
+ * Opt-in cache of {@code SELECT} results keyed by the {@link sql.Route}, the SQL text and the bound parameters.
+ * Entries are evicted least recently used first once their estimated size passes
+ * {@link common.Settings#RESULT_CACHE_SIZE} bytes, expire after {@link common.Settings#RESULT_CACHE_TTL} ms, and are
+ * dropped as soon as the library writes to a table they read, for writes in a {@link Transaction} once it ends. Writes
+ * whose tables cannot be found clear the whole cache.
+ * <p>
+ * Writes made by other programs are not seen, only the TTL bounds how stale an entry can get. The cache is skipped
+ * inside a {@link Transaction}, so uncommitted rows are never shared, and for statements with {@code byte[]} parameters.
+ * @see common.Settings#resultCache
+ * @see Query#fromPreparedStatement(String, Object...)
+ * **/
+public final class ResultCache {
+
+    private record Key(String route, String sql, List<Object> parameters) {}
+
+    private record Entry(ArrayList<String[]> rows, long bytes, long expires, Set<String> tables) {}
+
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private static final Map<String, Set<Key>> byTable = new HashMap<>();
+    private static long bytes;
+
+    /**
+     * Bumped by every write, a result read before a write is not stored after it
+     * **/
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    private ResultCache () {
+    }
+
+    /**
+     * Whether a {@code SELECT} with these parameters may use the memory or the {@link DiskCache} right now
+     * **/
+    static boolean applies (Object[] parameters) {
+        if (!(resultCache || diskCache) || Transaction.current() != null) return false;
+        if (parameters == null) return true;
+
+        for (Object parameter : parameters) {
+            if (parameter instanceof byte[]) return false;
+        }
+        return true;
+    }
+
+    static long generation () {
+        return generation.get();
+    }
+
+    /**
+     * Returns a copy of the cached rows, or {@code null} on a miss. The row arrays are shared, do not modify them.
+     * **/
+    static ArrayList<String[]> get (String sql, Object[] parameters) {
+        if (!resultCache) return null;
+        Key key = key(sql, parameters);
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+
+            if (entry != null && entry.expires() - System.nanoTime() <= 0) {
+                remove(key);
+                entry = null;
+            }
+
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+
+            hits.increment();
+            return new ArrayList<>(entry.rows());
+        }
+    }
+
+    /**
+     * Stores a result unless a write happened since {@code readGeneration}, or the result takes more than half the cache
+     * **/
+    static void put (String sql, Object[] parameters, ArrayList<String[]> rows, long readGeneration) {
+        if (!resultCache) return;
+        long size = estimate(rows);
+        long capacity = Math.max(0, RESULT_CACHE_SIZE);
+        if (size > capacity / 2) return;
+
+        Key key = key(sql, parameters);
+        long ttl = RESULT_CACHE_TTL > 0 ? RESULT_CACHE_TTL * 1_000_000 : Long.MAX_VALUE / 2;
+        Entry entry = new Entry(new ArrayList<>(rows), size, System.nanoTime() + ttl, TableNames.of(sql));
+
+        synchronized (entries) {
+            if (generation.get() != readGeneration) return;
+
+            remove(key);
+            entries.put(key, entry);
+            bytes += size;
+            for (String table : entry.tables()) {
+                byTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+            }
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes > capacity && eldest.hasNext()) {
+                Map.Entry<Key, Entry> evicted = eldest.next();
+                eldest.remove();
+                forget(evicted.getKey(), evicted.getValue());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every entry reading a table written by {@code sql}, or every entry when the tables are unknown, in memory
+     * and in the {@link DiskCache}. Called after the library ran a statement that is not a {@code SELECT}. A write inside
+     * the thread's {@link Transaction} is only recorded on it and dropped when the transaction ends, until then other
+     * threads still read the committed rows and could cache them again.
+     * @see Transaction#recordWrite(Set)
+     * **/
+    public static void invalidate (String sql) {
+        if (!resultCache && !diskCache && getEntryCount() == 0 && DiskCache.isEmpty()) return;
+
+        Set<String> tables = TableNames.of(sql);
+
+        Transaction transaction = Transaction.current();
+        if (transaction != null && transaction.getRoute() == DataSources.current()) {
+            transaction.recordWrite(tables);
+            return;
+        }
+
+        invalidate(tables);
+    }
+
+    /**
+     * Drops every entry reading one of {@code tables}, or every entry when it is empty
+     * @see #invalidate(String)
+     * **/
+    public static void invalidate (Set<String> tables) {
+        generation.incrementAndGet();
+
+        DiskCache.invalidate(tables);
+
+        if (!resultCache) {
+            if (getEntryCount() > 0) clear();
+            return;
+        }
+
+        synchronized (entries) {
+            if (tables.isEmpty()) {
+                invalidations.add(entries.size());
+                clearEntries();
+                return;
+            }
+
+            for (String table : tables) {
+                Set<Key> keys = byTable.get(table);
+                if (keys == null) continue;
+
+                for (Key key : new ArrayList<>(keys)) {
+                    remove(key);
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public static void clear () {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            clearEntries();
+        }
+    }
+
+    private static void clearEntries () {
+        entries.clear();
+        byTable.clear();
+        bytes = 0;
+    }
+
+    private static void remove (Key key) {
+        forget(key, entries.remove(key));
+    }
+
+    /**
+     * Removes an entry that already left {@link #entries} from the size and the table index
+     * **/
+    private static void forget (Key key, Entry entry) {
+        if (entry == null) return;
+
+        bytes -= entry.bytes();
+        for (String table : entry.tables()) {
+            Set<Key> keys = byTable.get(table);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) byTable.remove(table);
+        }
+    }
+
+    private static Key key (String sql, Object[] parameters) {
+        Route route = DataSources.current();
+        return new Key(route == null ? "" : route.getName(), sql, parameters == null ? List.of() : Arrays.asList(parameters.clone()));
+    }
+
+    /**
+     * Rough heap size of the rows: the list, every array and every {@code String} with one byte per char
+     * **/
+    static long estimate (List<String[]> rows) {
+        long size = 16 + 4L * rows.size();
+
+        for (String[] row : rows) {
+            size += 16 + 4L * row.length;
+            for (String value : row) {
+                if (value != null) size += 40 + value.length();
+            }
+        }
+        return size;
+    }
+
+    public static long getHits () {
+        return hits.sum();
+    }
+
+    public static long getMisses () {
+        return misses.sum();
+    }
+
+    public static long getEvictions () {
+        return evictions.sum();
+    }
+
+    public static long getInvalidations () {
+        return invalidations.sum();
+    }
+
+    /**
+     * Share of lookups answered from the cache, from {@code 0} to {@code 1}
+     * **/
+    public static double getHitRatio () {
+        long hit = getHits();
+        long total = hit + getMisses();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Estimated size of every cached result in bytes
+     * **/
+    public static long getSize () {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public static int getEntryCount () {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the result cache counters in a neat format
+     * **/
+    public static String getStatistics () {
+        return "HITS=%d | MISSES=%d | HIT RATIO=%.2f | ENTRIES=%d | SIZE=%d bytes | EVICTIONS=%d | INVALIDATIONS=%d"
+                .formatted(getHits(), getMisses(), getHitRatio(), getEntryCount(), getSize(), getEvictions(), getInvalidations());
+    }
+}
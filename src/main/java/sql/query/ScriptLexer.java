@@ -0,0 +1,343 @@
+package sql.query;
+
+import sql.Dialect;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a SQL script into single statements while reading it, so a script never has to be held in memory as a whole.
+ * Understands {@code '...'}, {@code "..."} and {@code `...`} quotes with doubled quotes, {@code --} and
+ * {@code /* *}{@code /} comments, so semicolons inside literals and comments do not end a statement. For MySQL backslash
+ * escaped quotes and {@code #} comments are understood too.
+ * <p>
+ * The body of a {@code CREATE [TEMP] TRIGGER ... BEGIN ... END} ends only at the delimiter after its matching
+ * {@code END}, {@code CASE ... END} inside it included, which is how SQLite triggers are written. Procedures and MySQL
+ * triggers with nested blocks need MySQL client style {@code DELIMITER} lines.
+ * <p>
+ * Comments are dropped from the returned statements, except {@code /*!...*}{@code /} MySQL version comments which the
+ * server executes. The reader is not closed by the lexer.
+ * @see Query#fromString(String)
+ * @see Query#fromFile(String)
+ * **/
+public class ScriptLexer implements Iterator<String> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final boolean backslashEscapes;
+    private final boolean hashComments;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private String delimiter = ";";
+    private final StringBuilder statement = new StringBuilder();
+
+    /**
+     * Word being read outside quotes and comments, with the amount of words before it in the statement
+     * **/
+    private final StringBuilder word = new StringBuilder();
+    private int words;
+    private boolean create;
+    private boolean trigger;
+    /**
+     * Open {@code BEGIN} and {@code CASE} blocks of a trigger, the delimiter does not end the statement while above 0
+     * **/
+    private int depth;
+
+    private String next;
+    private boolean done;
+
+    /**
+     * Lexer for MySQL scripts, treating backslashes in quotes as escapes and {@code #} as a line comment
+     * @see #ScriptLexer(Reader, Dialect)
+     * **/
+    public ScriptLexer (Reader reader) {
+        this(reader, Dialect.MYSQL);
+    }
+
+    /**
+     * Lexer for scripts run against {@code dialect}. Only MySQL knows {@code \'} escapes and {@code #} comments, SQLite
+     * only knows {@code ''} and would read a {@code #} as part of the statement.
+     * **/
+    public ScriptLexer (Reader reader, Dialect dialect) {
+        this(reader, dialect == Dialect.MYSQL, dialect == Dialect.MYSQL);
+    }
+
+    /**
+     * @param backslashEscapes whether {@code \'} escapes a quote
+     * @param hashComments whether {@code #} starts a line comment
+     * **/
+    public ScriptLexer (Reader reader, boolean backslashEscapes, boolean hashComments) {
+        this.reader = reader;
+        this.backslashEscapes = backslashEscapes;
+        this.hashComments = hashComments;
+    }
+
+    @Override
+    public boolean hasNext () {
+        if (next == null && !done) next = readStatement();
+        return next != null;
+    }
+
+    /**
+     * Returns the next statement, trimmed and without its delimiter
+     * **/
+    @Override
+    public String next () {
+        if (!hasNext()) throw new NoSuchElementException();
+        String result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Lets the lexer be used in a for-each loop, it can only be iterated once
+     * **/
+    public Iterable<String> statements () {
+        return () -> this;
+    }
+
+    private String readStatement () {
+        statement.setLength(0);
+        boolean lineStart = true;
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+
+            if (lineStart && isDelimiterCommand(ch)) {
+                continue;
+            }
+            if (ch != ' ' && ch != '\t') lineStart = false;
+
+            if (isWordChar(ch)) {
+                if (words < 3 || trigger) word.append(ch);
+            } else {
+                endWord();
+            }
+
+            switch (ch) {
+                case '\'', '"', '`' -> readQuoted(ch);
+                case '-' -> {
+                    if (peek() == '-') {
+                        skipLineComment();
+                        lineStart = true;
+                        separate();
+                    } else {
+                        statement.append(ch);
+                    }
+                }
+                case '#' -> {
+                    if (hashComments) {
+                        skipLineComment();
+                        lineStart = true;
+                        separate();
+                    } else {
+                        statement.append(ch);
+                    }
+                }
+                case '/' -> {
+                    if (peek() == '*') {
+                        read();
+                        readBlockComment();
+                    } else {
+                        statement.append(ch);
+                    }
+                }
+                case '\n' -> {
+                    statement.append(ch);
+                    lineStart = true;
+                }
+                default -> statement.append(ch);
+            }
+
+            if (depth == 0 && endsWithDelimiter()) {
+                statement.setLength(statement.length() - delimiter.length());
+                String result = statement.toString().trim();
+                statement.setLength(0);
+                resetWords();
+                lineStart = true;
+
+                if (!result.isEmpty()) return result;
+            }
+        }
+
+        done = true;
+        String rest = statement.toString().trim();
+        return rest.isEmpty() ? null : rest;
+    }
+
+    private static boolean isWordChar (char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+    }
+
+    /**
+     * Looks at a finished word for {@code CREATE [TEMP | TEMPORARY] TRIGGER} at the start of the statement, and for the
+     * block keywords of a trigger body. Not needed once a script sets its own delimiter.
+     * **/
+    private void endWord () {
+        if (word.isEmpty()) return;
+
+        String current = word.toString().toLowerCase(Locale.ROOT);
+        word.setLength(0);
+        words++;
+
+        if (words == 1) {
+            create = current.equals("create");
+        } else if (create && !trigger && words <= 3) {
+            trigger = current.equals("trigger") && delimiter.equals(";");
+        } else if (trigger) {
+            switch (current) {
+                case "begin", "case" -> depth++;
+                case "end" -> depth = Math.max(0, depth - 1);
+                default -> { }
+            }
+        }
+    }
+
+    private void resetWords () {
+        word.setLength(0);
+        words = 0;
+        create = false;
+        trigger = false;
+        depth = 0;
+    }
+
+    /**
+     * Handles a {@code DELIMITER xx} line. Only called at the start of a line, returns {@code false} without consuming
+     * anything when the line is something else.
+     * **/
+    private boolean isDelimiterCommand (char first) {
+        if (first != 'D' && first != 'd') return false;
+        for (int i = 0; i < statement.length(); i++) {
+            if (!Character.isWhitespace(statement.charAt(i))) return false;
+        }
+
+        String keyword = "DELIMITER";
+        fill(keyword.length());
+
+        if (limit - position < keyword.length()) return false;
+        for (int i = 1; i < keyword.length(); i++) {
+            if (Character.toUpperCase(buffer[position + i - 1]) != keyword.charAt(i)) return false;
+        }
+        char after = buffer[position + keyword.length() - 1];
+        if (after != ' ' && after != '\t') return false;
+
+        position += keyword.length() - 1;
+
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = read()) != -1 && c != '\n') line.append((char) c);
+
+        String value = line.toString().trim();
+        if (!value.isEmpty()) delimiter = value;
+        statement.setLength(0);
+        resetWords();
+        return true;
+    }
+
+    private void readQuoted (char quote) {
+        statement.append(quote);
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            statement.append(ch);
+
+            if (ch == '\\' && backslashEscapes && quote != '`') {
+                int escaped = read();
+                if (escaped != -1) statement.append((char) escaped);
+            } else if (ch == quote) {
+                if (peek() == quote) {
+                    statement.append((char) read());
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipLineComment () {
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+            // dropped
+        }
+    }
+
+    /**
+     * Skips a block comment, keeping {@code /*!...*}{@code /} comments since MySQL executes their content
+     * **/
+    private void readBlockComment () {
+        boolean keep = peek() == '!';
+        if (keep) statement.append("/*");
+
+        int previous = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (keep) statement.append((char) c);
+            if (previous == '*' && c == '/') break;
+            previous = c;
+        }
+
+        if (!keep) separate();
+    }
+
+    /**
+     * Keeps tokens on both sides of a dropped comment apart
+     * **/
+    private void separate () {
+        if (!statement.isEmpty() && !Character.isWhitespace(statement.charAt(statement.length() - 1))) {
+            statement.append(' ');
+        }
+    }
+
+    private boolean endsWithDelimiter () {
+        int length = statement.length();
+        int size = delimiter.length();
+        if (length < size) return false;
+
+        for (int i = 0; i < size; i++) {
+            if (statement.charAt(length - size + i) != delimiter.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private int read () {
+        if (position >= limit && !fill(1)) return -1;
+        return buffer[position++];
+    }
+
+    private int peek () {
+        if (position >= limit && !fill(1)) return -1;
+        return buffer[position];
+    }
+
+    /**
+     * Makes sure at least {@code count} chars are buffered if the reader has them, returns whether any are available
+     */
+    private boolean fill (int count) {
+        if (limit - position >= count) return true;
+
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+
+        try {
+            while (limit < count) {
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read == -1) break;
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return limit > position;
+    }
+}
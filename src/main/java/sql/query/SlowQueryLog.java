@@ -0,0 +1,125 @@
+package sql.query;
+
+import log.Log;
+import sql.PooledConnection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static common.Settings.explainSlowQueries;
+import static common.Settings.SLOW_QUERY_THRESHOLD;
+
+/**
+ * Writes statements slower than {@link common.Settings#SLOW_QUERY_THRESHOLD} ms to {@code LOG_DIR/slow.log}, with their
+ * duration, rows, parameters and the plan from {@code EXPLAIN} (MySQL) or {@code EXPLAIN QUERY PLAN} (SQLite).
+ * The plan is read right after the statement on the same connection, so it sees the same tables and transaction.
+ * @see common.Settings#slowQueryLog
+ * @see QueryMetrics.Timer
+ * **/
+final class SlowQueryLog {
+
+    static final String FILE_NAME = "slow.log";
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private SlowQueryLog () {
+    }
+
+    static boolean isSlow (long nanos) {
+        return nanos >= SLOW_QUERY_THRESHOLD * 1_000_000;
+    }
+
+    /**
+     * @param pooled connection the statement ran on, {@code null} skips the plan
+     * **/
+    static void write (String sql, Object[] parameters, long nanos, long rows, PooledConnection pooled) {
+        StringBuilder entry = new StringBuilder(256);
+        String line = System.lineSeparator();
+
+        entry.append('[').append(LocalDateTime.now().format(STAMP)).append("] ")
+                .append("%.3f ms | %d rows | ".formatted(nanos * 1e-6, rows))
+                .append(sql.strip()).append(line);
+
+        if (parameters != null && parameters.length > 0) {
+            entry.append("    parameters: ").append(describe(parameters)).append(line);
+        }
+
+        if (explainSlowQueries && pooled != null) {
+            for (String row : explain(sql, parameters, pooled)) {
+                entry.append("    plan: ").append(row).append(line);
+            }
+        }
+
+        append(entry.toString());
+        Log.warn("Slow query, %.3f ms: %s".formatted(nanos * 1e-6, sql.strip()));
+    }
+
+    private static Iterable<String> explain (String sql, Object[] parameters, PooledConnection pooled) {
+        String explain = pooled.getDialect().explain(sql);
+        if (explain == null) return List.of();
+
+        List<String> plan = new ArrayList<>();
+
+        try (PreparedStatement statement = pooled.getConnection().prepareStatement(explain)) {
+            if (parameters != null) Parameters.bind(statement, parameters);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int columns = resultSet.getMetaData().getColumnCount();
+
+                StringJoiner header = new StringJoiner(" | ");
+                for (int i = 1; i <= columns; i++) header.add(resultSet.getMetaData().getColumnLabel(i));
+                plan.add(header.toString());
+
+                while (resultSet.next()) {
+                    StringJoiner row = new StringJoiner(" | ");
+                    for (int i = 1; i <= columns; i++) row.add(String.valueOf(resultSet.getObject(i)));
+                    plan.add(row.toString());
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            plan.add("EXPLAIN failed: " + e.getMessage());
+        }
+
+        return plan;
+    }
+
+    private static String describe (Object[] parameters) {
+        StringJoiner joiner = new StringJoiner(", ");
+
+        for (Object parameter : parameters) {
+            String text = switch (parameter) {
+                case null -> "NULL";
+                case Parameters.Null typed -> "NULL";
+                case byte[] bytes -> "<%d bytes>".formatted(bytes.length);
+                case CharSequence chars -> "'" + chars + "'";
+                default -> parameter.toString();
+            };
+            if (text.length() > MAX_PARAMETER_LENGTH) text = text.substring(0, MAX_PARAMETER_LENGTH) + "...";
+            joiner.add(text);
+        }
+
+        return joiner.toString();
+    }
+
+    private static synchronized void append (String entry) {
+        try {
+            Path file = Path.of(Log.LOG_DIR, FILE_NAME);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, entry, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            Log.error("Could not write slow query log: " + e.getMessage());
+        }
+    }
+}
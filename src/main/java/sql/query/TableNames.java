@@ -0,0 +1,162 @@
+package sql.query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables a statement reads or writes, well enough for cache invalidation. Names are lowercase without
+ * quotes or schema. An empty set means the tables could not be found, callers must then assume every table.
+ * @see ResultCache
+ * **/
+final class TableNames {
+
+    /**
+     * Words after which a table name follows
+     * **/
+    private static final Set<String> INTRODUCERS = Set.of("from", "join", "into", "update", "table", "straight_join");
+
+    /**
+     * Words between an introducer and the table name
+     * **/
+    private static final Set<String> MODIFIERS = Set.of("if", "not", "exists", "ignore", "low_priority", "delayed",
+            "high_priority", "quick", "temporary", "only");
+
+    /**
+     * Words that end a comma separated table list, anything else after a table is an alias
+     * **/
+    private static final Set<String> CLAUSES = Set.of("where", "join", "inner", "left", "right", "cross", "full",
+            "natural", "outer", "on", "using", "group", "order", "limit", "having", "union", "except", "intersect", "set",
+            "values", "value", "select", "window", "for", "lock", "straight_join", "partition", "returning", "default",
+            "as", "(", ")", ";");
+
+    private TableNames () {
+    }
+
+    static Set<String> of (String sql) {
+        List<String> tokens = tokenize(sql);
+        Set<String> tables = new LinkedHashSet<>();
+
+        boolean createIndex = tokens.size() > 2 && tokens.get(0).equals("create")
+                && (tokens.get(1).equals("index") || tokens.get(2).equals("index"));
+
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (!INTRODUCERS.contains(token) && !(createIndex && token.equals("on"))) continue;
+
+            i = name(tokens, i + 1, tables);
+
+            //from a x, b as y, c
+            if (token.equals("from") || token.equals("update")) {
+                while (i + 1 < tokens.size()) {
+                    String next = tokens.get(i + 1);
+
+                    if (next.equals(",")) {
+                        i = name(tokens, i + 2, tables);
+                    } else if (next.equals("as") && i + 2 < tokens.size()) {
+                        i += 2;
+                    } else if (!CLAUSES.contains(next) && !INTRODUCERS.contains(next) && isWord(next)) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return tables;
+    }
+
+    /**
+     * Reads a possibly schema qualified name starting at {@code start} into {@code tables}
+     * @return index of the last token of the name
+     * **/
+    private static int name (List<String> tokens, int start, Set<String> tables) {
+        int i = start;
+        while (i < tokens.size() && MODIFIERS.contains(tokens.get(i))) i++;
+
+        if (i >= tokens.size() || !isWord(tokens.get(i)) || CLAUSES.contains(tokens.get(i))) return i - 1;
+
+        String name = tokens.get(i);
+        while (i + 2 < tokens.size() && tokens.get(i + 1).equals(".") && isWord(tokens.get(i + 2))) {
+            i += 2;
+            name = tokens.get(i);
+        }
+
+        tables.add(name);
+        return i;
+    }
+
+    private static boolean isWord (String token) {
+        char first = token.charAt(0);
+        return Character.isLetter(first) || first == '_' || first == '$';
+    }
+
+    /**
+     * Lowercase words and single character punctuation. Quoted identifiers become words without quotes,
+     * string literals and comments are skipped.
+     * **/
+    private static List<String> tokenize (String sql) {
+        List<String> tokens = new ArrayList<>();
+        int length = sql.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) continue;
+
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-' || c == '#') {
+                while (i < length && sql.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '\'') {
+                i = closing(sql, i, c);
+            } else if (c == '"' || c == '`' || c == '[') {
+                int end = closing(sql, i, c == '[' ? ']' : c);
+                String name = sql.substring(i + 1, Math.min(end, length));
+                tokens.add(toWord(name));
+                i = end;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+                int end = i;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_' || sql.charAt(end) == '$')) end++;
+                tokens.add(sql.substring(i, end).toLowerCase(Locale.ROOT));
+                i = end - 1;
+            } else {
+                tokens.add(String.valueOf(c));
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Quoted names can start with a digit or a symbol, prefix them so they still count as words
+     * **/
+    private static String toWord (String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return !lower.isEmpty() && isWord(lower) ? lower : "_" + lower;
+    }
+
+    private static int closing (String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote == '\'') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+}